@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final int TOP_SIZE = 10;
+
+    @Benchmark
+    public Film getFilmById(StorageState state) {
+        return state.filmStorage.getFilmById(randomFilm(state));
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms(StorageState state) {
+        return state.filmStorage.getPopularFilms(TOP_SIZE);
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPage(StorageState state) {
+        return state.filmStorage.getFilms(ThreadLocalRandom.current().nextLong(state.films), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Film> getFilms(StorageState state) {
+        return state.filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public Film addLike(StorageState state) {
+        long filmId = randomFilm(state);
+        long userId = state.firstLiker + ThreadLocalRandom.current().nextLong(StorageState.LIKERS);
+        state.addedLikes.add(new FilmLike(filmId, userId));
+        return state.filmStorage.addLike(filmId, userId);
+    }
+
+    @Benchmark
+    public List<User> getUserFriends(StorageState state) {
+        return state.userStorage.getUserFriends(randomUser(state));
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(StorageState state) {
+        return state.userStorage.getCommonFriends(randomUser(state), randomUser(state));
+    }
+
+    private static long randomFilm(StorageState state) {
+        return ThreadLocalRandom.current().nextLong(1, state.films + 1L);
+    }
+
+    private static long randomUser(StorageState state) {
+        return ThreadLocalRandom.current().nextLong(1, state.users + 1L);
+    }
+}
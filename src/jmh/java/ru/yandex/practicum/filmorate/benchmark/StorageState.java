@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@State(Scope.Benchmark)
+public class StorageState {
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final long SEED = 42;
+    static final int LIKERS = 1000;
+
+    // "db" turns the entity cache off so reads reach H2; "db-cached" measures the cached path.
+    @Param({"memory", "db", "db-cached"})
+    public String storage;
+
+    @Param({"1000", "10000"})
+    public int films;
+
+    @Param({"1000", "10000"})
+    public int users;
+
+    @Param({"20"})
+    public int friendsPerUser;
+
+    @Param({"20"})
+    public int likesPerUser;
+
+    FilmStorage filmStorage;
+    UserStorage userStorage;
+    // addLike likes as users without seeded likes; their likes are undone before each iteration.
+    long firstLiker;
+    final Queue<FilmLike> addedLikes = new ConcurrentLinkedQueue<>();
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (storage.startsWith("db")) {
+            int cacheSize = storage.equals("db-cached") ? 10_000 : 0;
+            context = new SpringApplicationBuilder(FilmorateApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("spring.datasource.url=jdbc:h2:mem:benchmark" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                            "filmorate.cache.films.maximum-size=" + cacheSize,
+                            "filmorate.cache.users.maximum-size=" + cacheSize,
+                            "logging.level.root=WARN",
+                            "logging.level.org.zalando.logbook=OFF")
+                    .run();
+            filmStorage = context.getBean("FilmDbStorage", FilmStorage.class);
+            userStorage = context.getBean("UserDbStorage", UserStorage.class);
+        } else {
+            userStorage = new InMemoryUserStorage();
+            filmStorage = new InMemoryFilmStorage(userStorage);
+        }
+        seed(new SplittableRandom(SEED));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLikes() {
+        for (FilmLike like = addedLikes.poll(); like != null; like = addedLikes.poll()) {
+            filmStorage.removeLike(like.getFilmId(), like.getUserId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null)
+            context.close();
+    }
+
+    private void seed(SplittableRandom random) {
+        firstLiker = users + 1L;
+        for (int i = 1; i <= users + LIKERS; i++) {
+            userStorage.addUser(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .name("User " + i)
+                    .birthday(LocalDate.of(1970, 1, 1).plusDays(random.nextInt(15_000)))
+                    .friends(new HashSet<>())
+                    .build());
+        }
+        List<Film> filmBatch = new ArrayList<>();
+        for (int i = 1; i <= films; i++) {
+            filmBatch.add(Film.builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25_000)))
+                    .duration(60 + random.nextInt(120))
+                    .mpa(Rating.builder().id(1 + random.nextInt(5)).build())
+                    .genres(new ArrayList<>(List.of(Genre.builder().id(1 + random.nextInt(6)).build())))
+                    .likes(new HashSet<>())
+                    .build());
+            if (filmBatch.size() == SEED_BATCH_SIZE || i == films) {
+                filmStorage.addFilms(filmBatch);
+                filmBatch = new ArrayList<>();
+            }
+        }
+        List<Friendship> friendships = new ArrayList<>();
+        List<FilmLike> likes = new ArrayList<>();
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < friendsPerUser; i++) {
+                long friendId = 1 + random.nextInt(users);
+                if (friendId != userId)
+                    friendships.add(new Friendship(userId, friendId));
+            }
+            for (int i = 0; i < likesPerUser; i++) {
+                likes.add(new FilmLike(1 + random.nextInt(films), userId));
+            }
+            if (friendships.size() >= SEED_BATCH_SIZE) {
+                userStorage.addFriends(friendships);
+                friendships = new ArrayList<>();
+            }
+            if (likes.size() >= SEED_BATCH_SIZE) {
+                filmStorage.addLikes(likes);
+                likes = new ArrayList<>();
+            }
+        }
+        userStorage.addFriends(friendships);
+        filmStorage.addLikes(likes);
+    }
+}
@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.load;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+final class DataGenerator {
+    private static final int BATCH_SIZE = 5000;
+    private static final int MAX_FRIENDS = 5000;
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1950, 1, 1);
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1950, 1, 1);
+    private final HttpClient client;
+    private final URI baseUri;
+    private final ObjectMapper objectMapper;
+    private final SplittableRandom random;
+    private final LoadOptions options;
+    private long firstUserId;
+    private long firstFilmId;
+
+    DataGenerator(HttpClient client, URI baseUri, ObjectMapper objectMapper, LoadOptions options) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.objectMapper = objectMapper;
+        this.options = options;
+        this.random = new SplittableRandom(options.seed());
+    }
+
+    Dataset generate() throws IOException, InterruptedException {
+        seedUsers();
+        seedFilms();
+        seedFriendships();
+        seedLikes();
+        return new Dataset(firstUserId, options.users(), firstFilmId, options.films());
+    }
+
+    private void seedUsers() throws IOException, InterruptedException {
+        List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < options.users(); i++) {
+            batch.add(Map.of(
+                    "email", "user" + i + "@load.test",
+                    "login", "user" + i,
+                    "name", "User " + i,
+                    "birthday", FIRST_BIRTHDAY.plusDays(random.nextInt(20_000)).toString()));
+            if (batch.size() == BATCH_SIZE || i == options.users() - 1) {
+                List<Long> ids = postForIds("/users/batch", batch);
+                if (firstUserId == 0)
+                    firstUserId = ids.getFirst();
+                batch.clear();
+                progress("users", i + 1, options.users());
+            }
+        }
+    }
+
+    private void seedFilms() throws IOException, InterruptedException {
+        List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < options.films(); i++) {
+            List<Map<String, Object>> genres = new ArrayList<>();
+            int genreCount = 1 + random.nextInt(3);
+            for (int g = 0; g < genreCount; g++) {
+                genres.add(Map.of("id", 1 + random.nextInt(6)));
+            }
+            batch.add(Map.of(
+                    "name", "Film " + i,
+                    "description", "Generated film " + i,
+                    "releaseDate", FIRST_RELEASE.plusDays(random.nextInt(27_000)).toString(),
+                    "duration", 60 + random.nextInt(120),
+                    "mpa", Map.of("id", 1 + random.nextInt(5)),
+                    "genres", genres));
+            if (batch.size() == BATCH_SIZE || i == options.films() - 1) {
+                List<Long> ids = postForIds("/films/batch", batch);
+                if (firstFilmId == 0)
+                    firstFilmId = ids.getFirst();
+                batch.clear();
+                progress("films", i + 1, options.films());
+            }
+        }
+    }
+
+    private void seedFriendships() throws IOException, InterruptedException {
+        double alpha = options.friendsExponent() - 1;
+        double minDegree = options.meanFriends() * (alpha - 1) / alpha;
+        List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+        long sent = 0;
+        for (long i = 0; i < options.users(); i++) {
+            long degree = Math.min(Math.min(MAX_FRIENDS, options.users() - 1),
+                    Math.round(minDegree * Math.pow(1 - random.nextDouble(), -1 / alpha)));
+            for (long d = 0; d < degree; d++) {
+                long friend = (long) (options.users() * Math.pow(random.nextDouble(), 3));
+                if (friend == i)
+                    continue;
+                batch.add(Map.of("userId", firstUserId + i, "friendId", firstUserId + friend));
+                if (batch.size() == BATCH_SIZE) {
+                    post("/users/friends/batch", batch);
+                    sent += batch.size();
+                    batch.clear();
+                }
+            }
+            if ((i + 1) % 100_000 == 0)
+                progress("users with friends", i + 1, options.users());
+        }
+        if (!batch.isEmpty()) {
+            post("/users/friends/batch", batch);
+            sent += batch.size();
+        }
+        System.out.printf("friendships: %d sent%n", sent);
+    }
+
+    private void seedLikes() throws IOException, InterruptedException {
+        List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < options.likes(); i++) {
+            long film = (long) (options.films() * Math.pow(random.nextDouble(), 2));
+            long user = random.nextLong(options.users());
+            batch.add(Map.of("filmId", firstFilmId + film, "userId", firstUserId + user));
+            if (batch.size() == BATCH_SIZE || i == options.likes() - 1) {
+                post("/films/likes/batch", batch);
+                batch.clear();
+                progress("likes", i + 1, options.likes());
+            }
+        }
+    }
+
+    private List<Long> postForIds(String path, Object body) throws IOException, InterruptedException {
+        return objectMapper.readValue(post(path, body), new TypeReference<>() {
+        });
+    }
+
+    private String post(String path, Object body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200)
+            throw new IllegalStateException(path + " returned " + response.statusCode() + ": " + response.body());
+        return response.body();
+    }
+
+    private static void progress(String what, long done, long total) {
+        if (done == total || done % (BATCH_SIZE * 20L) == 0)
+            System.out.printf("%s: %d/%d%n", what, done, total);
+    }
+
+    record Dataset(long firstUserId, long users, long firstFilmId, long films) {
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+final class ExportComparison {
+    private static final List<String> PATHS = List.of("/films/export", "/reactive/films");
+    private static final int PROBE_CLIENTS = 4;
+    private static final int READ_CHUNK = 8192;
+    private final HttpClient client;
+    private final URI baseUri;
+    private final DataGenerator.Dataset dataset;
+    private final LoadOptions options;
+
+    ExportComparison(HttpClient client, URI baseUri, DataGenerator.Dataset dataset, LoadOptions options) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.dataset = dataset;
+        this.options = options;
+    }
+
+    void run() throws IOException, InterruptedException {
+        System.out.printf("%nslow readers=%d read delay=%dms per %d bytes duration=%ds (latency in ms)%n",
+                options.concurrency(), options.readDelay().toMillis(), READ_CHUNK, options.duration().toSeconds());
+        System.out.printf("%-16s %8s %9s %9s %7s %9s %8s %8s %8s %7s%n",
+                "export", "exports", "p50", "p99", "errors", "probes", "p50", "p99", "max", "errors");
+        for (String path : PATHS) {
+            int status = client.send(get(path), HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status == 404) {
+                System.out.printf("%-16s not available, rebuild with -P load,reactive%n", path);
+                continue;
+            }
+            measure(path);
+        }
+    }
+
+    private void measure(String path) throws InterruptedException {
+        Recorder exports = new Recorder(3);
+        Recorder probes = new Recorder(3);
+        LongAdder exportErrors = new LongAdder();
+        LongAdder probeErrors = new LongAdder();
+        long measureFrom = System.nanoTime() + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < options.concurrency(); i++) {
+                executor.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        boolean ok = readSlowly(path);
+                        record(exports, exportErrors, ok, start, measureFrom);
+                    }
+                });
+            }
+            for (int i = 0; i < PROBE_CLIENTS; i++) {
+                executor.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        long film = dataset.firstFilmId() + ThreadLocalRandom.current().nextLong(dataset.films());
+                        boolean ok;
+                        try {
+                            ok = client.send(get("/films/" + film), HttpResponse.BodyHandlers.discarding())
+                                    .statusCode() < 500;
+                        } catch (IOException e) {
+                            ok = false;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        record(probes, probeErrors, ok, start, measureFrom);
+                    }
+                });
+            }
+        }
+        Histogram exportHistogram = exports.getIntervalHistogram();
+        Histogram probeHistogram = probes.getIntervalHistogram();
+        System.out.printf("%-16s %8d %9.1f %9.1f %7d %9d %8.2f %8.2f %8.2f %7d%n",
+                path, exportHistogram.getTotalCount(),
+                exportHistogram.getValueAtPercentile(50) / 1000.0,
+                exportHistogram.getValueAtPercentile(99) / 1000.0,
+                exportErrors.sum(), probeHistogram.getTotalCount(),
+                probeHistogram.getValueAtPercentile(50) / 1000.0,
+                probeHistogram.getValueAtPercentile(99) / 1000.0,
+                probeHistogram.getMaxValue() / 1000.0,
+                probeErrors.sum());
+    }
+
+    private boolean readSlowly(String path) {
+        try {
+            HttpResponse<InputStream> response = client.send(get(path), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                byte[] buffer = new byte[READ_CHUNK];
+                while (body.readNBytes(buffer, 0, READ_CHUNK) > 0) {
+                    Thread.sleep(options.readDelay());
+                }
+            }
+            return response.statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void record(Recorder latency, LongAdder errors, boolean ok, long start, long measureFrom) {
+        if (start < measureFrom)
+            return;
+        latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        if (!ok)
+            errors.increment();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).GET().build();
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+final class LoadDriver {
+    private final HttpClient client;
+    private final URI baseUri;
+    private final DataGenerator.Dataset dataset;
+    private final LoadOptions options;
+    private final List<Operation> operations = new ArrayList<>();
+    private final int totalWeight;
+
+    LoadDriver(HttpClient client, URI baseUri, DataGenerator.Dataset dataset, LoadOptions options) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.dataset = dataset;
+        this.options = options;
+        operations.add(new Operation("GET /films/{id}", 35, random -> get("/films/" + film(random))));
+        operations.add(new Operation("GET /films/popular", 15, random -> get("/films/popular?count=10")));
+        operations.add(new Operation("GET /films?after&limit", 5, random ->
+                get("/films?after=" + film(random) + "&limit=100")));
+        operations.add(new Operation("GET /users/{id}/friends", 15, random -> get("/users/" + user(random) + "/friends")));
+        operations.add(new Operation("GET /users/{id}/friends/common/{otherId}", 10, random ->
+                get("/users/" + user(random) + "/friends/common/" + user(random))));
+        operations.add(new Operation("GET /users/{id}/recommendations", 5, random ->
+                get("/users/" + user(random) + "/recommendations?count=10")));
+        operations.add(new Operation("PUT /films/{id}/like/{userId}", 10, random ->
+                HttpRequest.newBuilder(baseUri.resolve("/films/" + film(random) + "/like/" + user(random)))
+                        .PUT(HttpRequest.BodyPublishers.noBody())
+                        .build()));
+        operations.add(new Operation("DELETE /films/{id}/like/{userId}", 5, random ->
+                HttpRequest.newBuilder(baseUri.resolve("/films/" + film(random) + "/like/" + user(random)))
+                        .DELETE()
+                        .build()));
+        totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+    }
+
+    void run() throws InterruptedException, IOException {
+        long measureFrom = System.nanoTime() + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (options.model().equals("closed")) {
+                for (int i = 0; i < options.concurrency(); i++) {
+                    executor.execute(() -> {
+                        while (System.nanoTime() < end) {
+                            long start = System.nanoTime();
+                            execute(pick(), start, measureFrom);
+                        }
+                    });
+                }
+            } else {
+                long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+                long start = System.nanoTime();
+                for (long i = 0; ; i++) {
+                    long intended = start + i * interval;
+                    if (intended >= end)
+                        break;
+                    long delay = intended - System.nanoTime();
+                    if (delay > 0)
+                        LockSupport.parkNanos(delay);
+                    Operation operation = pick();
+                    executor.execute(() -> execute(operation, intended, measureFrom));
+                }
+            }
+        }
+        report();
+    }
+
+    private void execute(Operation operation, long intendedStart, long measureFrom) {
+        HttpRequest request = operation.request().apply(ThreadLocalRandom.current());
+        int status;
+        try {
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (intendedStart < measureFrom)
+            return;
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+        operation.latency().recordValue(micros);
+        if (status < 0 || status >= 500)
+            operation.errors().increment();
+        else if (status >= 400)
+            operation.clientErrors().increment();
+    }
+
+    private Operation pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Operation operation : operations) {
+            ticket -= operation.weight();
+            if (ticket < 0)
+                return operation;
+        }
+        return operations.getLast();
+    }
+
+    private void report() throws IOException {
+        Path directory = Path.of(options.reportDirectory());
+        Files.createDirectories(directory);
+        Histogram total = new Histogram(3);
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            Histogram histogram = operation.latency().getIntervalHistogram();
+            histograms.put(operation.name(), histogram);
+            total.add(histogram);
+        }
+        double seconds = options.duration().toNanos() / 1e9;
+        System.out.printf("%nmodel=%s concurrency=%d rate=%.0f/s duration=%ds (latency in ms)%n",
+                options.model(), options.concurrency(), options.rate(), options.duration().toSeconds());
+        System.out.printf("%-45s %9s %9s %7s %7s %8s %8s %8s %8s %8s%n",
+                "operation", "count", "rps", "5xx", "4xx", "p50", "p90", "p99", "p99.9", "max");
+        for (Operation operation : operations) {
+            print(operation.name(), histograms.get(operation.name()), seconds,
+                    operation.errors().sum(), operation.clientErrors().sum());
+        }
+        print("total", total, seconds,
+                operations.stream().mapToLong(operation -> operation.errors().sum()).sum(),
+                operations.stream().mapToLong(operation -> operation.clientErrors().sum()).sum());
+        Path report = directory.resolve(options.model() + "-total.hgrm");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report))) {
+            total.outputPercentileDistribution(out, 1000.0);
+        }
+        System.out.println("percentile distribution written to " + report);
+    }
+
+    private static void print(String name, Histogram histogram, double seconds, long errors, long clientErrors) {
+        System.out.printf("%-45s %9d %9.1f %7d %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                name, histogram.getTotalCount(), histogram.getTotalCount() / seconds, errors, clientErrors,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).GET().build();
+    }
+
+    private long film(ThreadLocalRandom random) {
+        return dataset.firstFilmId() + random.nextLong(dataset.films());
+    }
+
+    private long user(ThreadLocalRandom random) {
+        return dataset.firstUserId() + random.nextLong(dataset.users());
+    }
+
+    private record Operation(String name, int weight, Function<ThreadLocalRandom, HttpRequest> request,
+                             Recorder latency, LongAdder errors, LongAdder clientErrors) {
+        Operation(String name, int weight, Function<ThreadLocalRandom, HttpRequest> request) {
+            this(name, weight, request, new Recorder(3), new LongAdder(), new LongAdder());
+        }
+    }
+}
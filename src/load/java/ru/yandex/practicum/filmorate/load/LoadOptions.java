@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.load;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+record LoadOptions(String url, boolean generate, long seed, long users, long films, long likes, int meanFriends,
+                   double friendsExponent, String scenario, String model, int concurrency, double rate,
+                   Duration readDelay, Duration warmup, Duration duration, String reportDirectory) {
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        LoadOptions options = new LoadOptions(
+                values.get("url"),
+                Boolean.parseBoolean(values.getOrDefault("generate", "true")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Long.parseLong(values.getOrDefault("users", "10000")),
+                Long.parseLong(values.getOrDefault("films", "10000")),
+                Long.parseLong(values.getOrDefault("likes", "200000")),
+                Integer.parseInt(values.getOrDefault("mean-friends", "20")),
+                Double.parseDouble(values.getOrDefault("friends-exponent", "2.5")),
+                values.getOrDefault("scenario", "mix"),
+                values.getOrDefault("model", "closed"),
+                Integer.parseInt(values.getOrDefault("concurrency", "64")),
+                Double.parseDouble(values.getOrDefault("rate", "500")),
+                Duration.ofMillis(Long.parseLong(values.getOrDefault("read-delay-ms", "10"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "10"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "60"))),
+                values.getOrDefault("report-dir", "target/load"));
+        if (options.friendsExponent() <= 2)
+            throw new IllegalArgumentException("--friends-exponent must be greater than 2 for a finite mean degree");
+        if (!options.scenario().equals("mix") && !options.scenario().equals("export"))
+            throw new IllegalArgumentException("--scenario must be mix or export");
+        if (!options.model().equals("closed") && !options.model().equals("open"))
+            throw new IllegalArgumentException("--model must be closed or open");
+        return options;
+    }
+}
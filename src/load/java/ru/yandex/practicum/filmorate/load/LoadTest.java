@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+public final class LoadTest {
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        ConfigurableApplicationContext context = null;
+        URI baseUri;
+        if (options.url() == null) {
+            context = new SpringApplicationBuilder(FilmorateApplication.class)
+                    .properties("server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                            "logging.level.root=WARN",
+                            "logging.level.org.zalando.logbook=OFF")
+                    .run();
+            baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+        } else {
+            baseUri = URI.create(options.url());
+        }
+        ObjectMapper objectMapper = JsonMapper.builder().build();
+        try (HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build()) {
+            DataGenerator.Dataset dataset = options.generate()
+                    ? new DataGenerator(client, baseUri, objectMapper, options).generate()
+                    : new DataGenerator.Dataset(1, options.users(), 1, options.films());
+            if (options.scenario().equals("export")) {
+                new ExportComparison(client, baseUri, dataset, options).run();
+            } else {
+                new LoadDriver(client, baseUri, dataset, options).run();
+            }
+        } finally {
+            if (context != null)
+                context.close();
+        }
+    }
+}
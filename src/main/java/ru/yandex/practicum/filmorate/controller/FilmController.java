@@ -1,21 +1,61 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final FilmService service;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public List<Film> getFilms() {
-        return service.getFilms();
+    public ResponseEntity<List<Film>> getFilms(@RequestParam(required = false) final Long after,
+                                               @RequestParam(required = false) final Integer limit) {
+        if (after == null && limit == null)
+            return ResponseEntity.ok(service.getFilms());
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        List<Film> films = service.getFilms(after == null ? 0 : after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (films.size() == pageSize)
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(films.getLast().getId()));
+        return response.body(films);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        ObjectWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> service.exportFilms(film -> {
+            try {
+                writer.writeValue(out, film);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -24,8 +64,18 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> getPopular(@RequestParam(defaultValue = "10", required = false) final int count) {
-        return service.getPopularFilms(count);
+    public List<Film> getPopular(@RequestParam(defaultValue = "10", required = false) final int count,
+                                 @RequestParam(required = false) final Long genreId,
+                                 @RequestParam(required = false) final Long mpaId,
+                                 @RequestParam(required = false) final Integer year) {
+        return service.getPopularFilms(count, genreId, mpaId, year);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilar(@PathVariable final long id,
+                                 @RequestParam(defaultValue = "10", required = false) final int count,
+                                 @RequestParam(defaultValue = "likes", required = false) final String mode) {
+        return service.getSimilarFilms(id, count, mode);
     }
 
     @PostMapping
@@ -33,6 +83,11 @@ public class FilmController {
         return service.addFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<Long> addFilms(@RequestBody List<Film> films) {
+        return service.addFilms(films);
+    }
+
     @PutMapping
     public Film updateFilm(@RequestBody Film film) {
         return service.updateFilm(film);
@@ -43,6 +98,11 @@ public class FilmController {
         return service.addLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public BatchResult addLikes(@RequestBody List<FilmLike> likes) {
+        return service.addLikes(likes);
+    }
+
     @DeleteMapping
     public void removeFilm(@RequestBody Film film) {
         service.removeFilm(film);
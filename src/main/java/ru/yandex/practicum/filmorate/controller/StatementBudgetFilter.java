@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.storage.JdbcStatementCounter;
+
+import java.io.IOException;
+
+@Component
+@RequiredArgsConstructor
+public class StatementBudgetFilter extends OncePerRequestFilter {
+    private final JdbcStatementCounter jdbcStatementCounter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        jdbcStatementCounter.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            jdbcStatementCounter.end(request.getMethod() + " " + request.getRequestURI());
+        }
+    }
+}
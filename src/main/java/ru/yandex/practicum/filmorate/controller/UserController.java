@@ -1,21 +1,60 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public List<User> getUsers() {
-        return userService.getUsers();
+    public ResponseEntity<List<User>> getUsers(@RequestParam(required = false) final Long after,
+                                               @RequestParam(required = false) final Integer limit) {
+        if (after == null && limit == null)
+            return ResponseEntity.ok(userService.getUsers());
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        return page(userService.getUsers(after == null ? 0 : after, pageSize), pageSize);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        ObjectWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> userService.exportUsers(user -> {
+            try {
+                writer.writeValue(out, user);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -24,8 +63,13 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getUserFriends(@PathVariable final long id) {
-        return userService.getUserFriends(id);
+    public ResponseEntity<List<User>> getUserFriends(@PathVariable final long id,
+                                                     @RequestParam(required = false) final Long after,
+                                                     @RequestParam(required = false) final Integer limit) {
+        if (after == null && limit == null)
+            return ResponseEntity.ok(userService.getUserFriends(id));
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        return page(userService.getUserFriends(id, after == null ? 0 : after, pageSize), pageSize);
     }
 
     @GetMapping("/{id}/friends/common/{friendId}")
@@ -33,11 +77,33 @@ public class UserController {
         return userService.getCommonFriends(id, friendId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable final long id,
+                                           @RequestParam(defaultValue = "10", required = false) final int limit) {
+        return userService.getFriendSuggestions(id, limit);
+    }
+
+    @GetMapping("/{id}/path/{otherId}")
+    public List<User> getFriendshipPath(@PathVariable final long id, @PathVariable final long otherId) {
+        return userService.getFriendshipPath(id, otherId);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable final long id,
+                                         @RequestParam(defaultValue = "10", required = false) final int count) {
+        return filmService.getRecommendations(id, count);
+    }
+
     @PostMapping
     public User addUser(@RequestBody User user) {
         return userService.addUser(user);
     }
 
+    @PostMapping("/batch")
+    public List<Long> addUsers(@RequestBody List<User> users) {
+        return userService.addUsers(users);
+    }
+
     @PutMapping
     public User updateUser(@RequestBody User user) {
         return userService.updateUser(user);
@@ -48,6 +114,11 @@ public class UserController {
         userService.addFriend(id, friendId);
     }
 
+    @PostMapping("/friends/batch")
+    public BatchResult addFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships);
+    }
+
     @PutMapping("/{id}/friends/confirm")
     public void confirmFriends(@PathVariable final long id) {
         userService.confirmFriends(id);
@@ -62,4 +133,11 @@ public class UserController {
     public void removeFriend(@PathVariable final long id, @PathVariable final long friendId) {
         userService.removeFriend(id, friendId);
     }
+
+    private ResponseEntity<List<User>> page(List<User> users, int pageSize) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (users.size() == pageSize)
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(users.getLast().getId()));
+        return response.body(users);
+    }
 }
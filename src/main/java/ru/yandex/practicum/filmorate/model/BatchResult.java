@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+public class BatchResult {
+    private int accepted;
+    @Builder.Default
+    private List<BatchFailure> failures = new ArrayList<>();
+
+    public void addFailure(int index, String error) {
+        failures.add(BatchFailure.builder()
+                .index(index)
+                .error(error)
+                .build());
+    }
+}
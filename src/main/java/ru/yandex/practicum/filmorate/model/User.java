@@ -7,7 +7,7 @@ import java.time.LocalDate;
 import java.util.*;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class User {
     private long id;
     private String email;
@@ -2,15 +2,20 @@ package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class FilmService {
+    private static final int MAX_PAGE_SIZE = 1000;
     private final FilmStorage filmStorage;
 
     public FilmService(@Qualifier("FilmDbStorage") FilmStorage filmStorage) {
@@ -25,10 +30,18 @@ public class FilmService {
         return filmStorage.removeLike(filmId, userId);
     }
 
+    public BatchResult addLikes(List<FilmLike> likes) {
+        return filmStorage.addLikes(likes);
+    }
+
     public Film addFilm(Film film) {
         return filmStorage.addFilm(film);
     }
 
+    public List<Long> addFilms(List<Film> films) {
+        return filmStorage.addFilms(films);
+    }
+
     public Film updateFilm(Film film) {
         return filmStorage.updateFilm(film);
     }
@@ -45,10 +58,40 @@ public class FilmService {
         return filmStorage.getFilms();
     }
 
+    public List<Film> getFilms(long after, int limit) {
+        validatePage(after, limit);
+        return filmStorage.getFilms(after, limit);
+    }
+
+    public void exportFilms(Consumer<Film> consumer) {
+        filmStorage.exportFilms(consumer);
+    }
+
     public List<Film> getPopularFilms(int max) {
         return filmStorage.getPopularFilms(max);
     }
 
+    public List<Film> getPopularFilms(int max, Long genreId, Long mpaId, Integer year) {
+        if (genreId == null && mpaId == null && year == null)
+            return getPopularFilms(max);
+        validatePage(0, max);
+        return filmStorage.getPopularFilms(max, genreId, mpaId, year);
+    }
+
+    public List<Film> getRecommendations(long userId, int max) {
+        validatePage(0, max);
+        return filmStorage.getRecommendations(userId, max);
+    }
+
+    public List<Film> getSimilarFilms(long id, int max, String mode) {
+        validatePage(0, max);
+        return switch (mode) {
+            case "likes" -> filmStorage.getSimilarFilms(id, max);
+            case "content" -> filmStorage.getContentSimilarFilms(id, max);
+            default -> throw new ValidationException("неизвестный режим похожих фильмов: " + mode);
+        };
+    }
+
     public List<Genre> getGenres() {
         return filmStorage.getGenres();
     }
@@ -64,4 +107,11 @@ public class FilmService {
     public Rating getMpaById(long id) {
         return filmStorage.getMpaById(id);
     }
+
+    private void validatePage(long after, int limit) {
+        if (after < 0)
+            throw new ValidationException("курсор страницы не может быть отрицательным");
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new ValidationException("размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+    }
 }
@@ -3,14 +3,19 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
     private final UserStorage userStorage;
 
     public UserService(@Qualifier("UserDbStorage") UserStorage userStorage) {
@@ -25,14 +30,32 @@ public class UserService {
         userStorage.removeFriend(userId, friendId);
     }
 
+    public BatchResult addFriends(List<Friendship> friendships) {
+        return userStorage.addFriends(friendships);
+    }
+
     public List<User> getUserFriends(long id) {
         return userStorage.getUserFriends(id);
     }
 
+    public List<User> getUserFriends(long id, long after, int limit) {
+        validatePage(after, limit);
+        return userStorage.getUserFriends(id, after, limit);
+    }
+
     public List<User> getCommonFriends(long id, long friendId) {
         return userStorage.getCommonFriends(id, friendId);
     }
 
+    public List<User> getFriendSuggestions(long id, int limit) {
+        validatePage(0, limit);
+        return userStorage.getFriendSuggestions(id, limit);
+    }
+
+    public List<User> getFriendshipPath(long id, long otherId) {
+        return userStorage.getFriendshipPath(id, otherId);
+    }
+
     public void confirmFriends(long id) {
         userStorage.confirmFriends(id);
     }
@@ -45,10 +68,23 @@ public class UserService {
         return userStorage.getUsers();
     }
 
+    public List<User> getUsers(long after, int limit) {
+        validatePage(after, limit);
+        return userStorage.getUsers(after, limit);
+    }
+
+    public void exportUsers(Consumer<User> consumer) {
+        userStorage.exportUsers(consumer);
+    }
+
     public User addUser(User user) {
         return userStorage.addUser(user);
     }
 
+    public List<Long> addUsers(List<User> users) {
+        return userStorage.addUsers(users);
+    }
+
     public User updateUser(User user) {
         return userStorage.updateUser(user);
     }
@@ -56,4 +92,11 @@ public class UserService {
     public void deleteUser(User user) {
         userStorage.deleteUser(user);
     }
+
+    private void validatePage(long after, int limit) {
+        if (after < 0)
+            throw new ValidationException("курсор страницы не может быть отрицательным");
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new ValidationException("размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+    }
 }
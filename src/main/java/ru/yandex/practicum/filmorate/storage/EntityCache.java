@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.function.LongFunction;
+
+@Component
+public class EntityCache {
+    private final GuardedCache<Film> films;
+    private final GuardedCache<User> users;
+
+    public EntityCache(MeterRegistry meterRegistry,
+                       @Value("${filmorate.cache.films.maximum-size:10000}") long maxFilms,
+                       @Value("${filmorate.cache.users.maximum-size:10000}") long maxUsers,
+                       @Value("${filmorate.cache.ttl-ms:60000}") long ttlMillis) {
+        this.films = new GuardedCache<>("films", maxFilms, Duration.ofMillis(ttlMillis), meterRegistry);
+        this.users = new GuardedCache<>("users", maxUsers, Duration.ofMillis(ttlMillis), meterRegistry);
+    }
+
+    public Film getFilm(long id, LongFunction<Film> loader) {
+        Film film = films.get(id, loader);
+        return film.toBuilder()
+                .genres(new ArrayList<>(film.getGenres()))
+                .build();
+    }
+
+    public void invalidateFilm(long id) {
+        films.invalidate(id);
+    }
+
+    public void invalidateFilms(Iterable<Long> ids) {
+        for (long id : ids) {
+            films.invalidate(id);
+        }
+    }
+
+    public User getUser(long id, LongFunction<User> loader) {
+        User user = users.get(id, loader);
+        return user.toBuilder()
+                .userFriends(new ArrayList<>(user.getUserFriends()))
+                .build();
+    }
+
+    public void invalidateUser(long id) {
+        users.invalidate(id);
+    }
+
+    public void invalidateUsers(long[] ids) {
+        for (long id : ids) {
+            users.invalidate(id);
+        }
+    }
+}
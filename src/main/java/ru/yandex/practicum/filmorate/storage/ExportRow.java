@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.storage;
+
+// Typed column access shared by the JDBC exports (ResultSet::getObject) and the reactive
+// listings (Readable::get), so both stacks map export rows with the same code.
+@FunctionalInterface
+public interface ExportRow<E extends Exception> {
+    <T> T get(String column, Class<T> type) throws E;
+}
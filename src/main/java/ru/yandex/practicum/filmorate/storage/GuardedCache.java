@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongFunction;
+
+// Bounded Caffeine cache that loads outside Caffeine's compute lock: the JDBC read may wait on the
+// bulkhead and would pin the carrier and every key in the same bin. The generation is bumped before
+// invalidate and checked under the key's lock, so a read that raced a write is returned but never cached.
+public class GuardedCache<T> {
+    private static final int GENERATION_STRIPES = 64;
+    private final Cache<Long, T> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Timer loads;
+
+    public GuardedCache(String name, long maximumSize, Duration ttl, MeterRegistry meterRegistry) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats();
+        if (ttl != null)
+            builder.expireAfterWrite(ttl);
+        this.cache = builder.build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        this.loads = Timer.builder("filmorate.cache.load")
+                .description("Time spent loading values on cache misses")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public T get(long id, LongFunction<T> loader) {
+        T cached = cache.getIfPresent(id);
+        if (cached != null)
+            return cached;
+        int stripe = stripe(id);
+        long generation = generations.get(stripe);
+        T loaded = loads.record(() -> loader.apply(id));
+        cache.asMap().compute(id, (key, current) -> generations.get(stripe) == generation ? loaded : current);
+        return loaded;
+    }
+
+    public void invalidate(long id) {
+        generations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private static int stripe(long id) {
+        return (int) (id & (GENERATION_STRIPES - 1));
+    }
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Component
+public class JdbcBulkhead {
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public JdbcBulkhead(MeterRegistry meterRegistry,
+                        @Value("${filmorate.jdbc.bulkhead.enabled:false}") boolean enabled,
+                        @Value("${filmorate.jdbc.bulkhead.max-concurrent:10}") int maxConcurrent,
+                        @Value("${filmorate.jdbc.bulkhead.max-wait-ms:2000}") long maxWaitMillis) {
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+        Gauge.builder("filmorate.jdbc.bulkhead.queue", permits, Semaphore::getQueueLength)
+                .description("Threads waiting for a JDBC connection permit")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.jdbc.bulkhead.active", permits, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .description("JDBC connections currently held through the bulkhead")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("filmorate.jdbc.bulkhead.wait")
+                .description("Time spent waiting for a JDBC connection permit")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("filmorate.jdbc.bulkhead.rejected")
+                .description("Connection requests rejected after the wait timeout")
+                .register(meterRegistry);
+    }
+
+    @Bean
+    static BeanPostProcessor jdbcBulkheadDataSourcePostProcessor(ObjectProvider<JdbcBulkhead> bulkhead) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof BulkheadDataSource))
+                    return new BulkheadDataSource(dataSource, bulkhead);
+                return bean;
+            }
+        };
+    }
+
+    Connection acquire(ConnectionSource source) throws SQLException {
+        if (!enabled)
+            return source.get();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a JDBC connection permit", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            log.warn("JDBC bulkhead full: {} connections busy, {} waiting", maxConcurrent, permits.getQueueLength());
+            throw new SQLTransientConnectionException("No JDBC connection permit within " + maxWaitMillis + " ms");
+        }
+        try {
+            return releasing(source.get());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection releasing(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true))
+                            permits.release();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    static final class BulkheadDataSource extends DelegatingDataSource {
+        private final ObjectProvider<JdbcBulkhead> bulkhead;
+
+        BulkheadDataSource(DataSource dataSource, ObjectProvider<JdbcBulkhead> bulkhead) {
+            super(dataSource);
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return bulkhead.getObject().acquire(() -> obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return bulkhead.getObject().acquire(() -> obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+}
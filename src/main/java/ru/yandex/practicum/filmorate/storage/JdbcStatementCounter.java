@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+
+@Slf4j
+@Component
+public class JdbcStatementCounter {
+    private static final Set<String> STATEMENT_METHODS = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final ThreadLocal<int[]> STATEMENTS = new ThreadLocal<>();
+    private final int budget;
+    private final DistributionSummary perRequest;
+    private final Counter overBudget;
+
+    public JdbcStatementCounter(MeterRegistry meterRegistry,
+                                @Value("${filmorate.jdbc.statement-budget:20}") int budget) {
+        this.budget = budget;
+        this.perRequest = DistributionSummary.builder("filmorate.jdbc.statements")
+                .description("JDBC statements executed per HTTP request")
+                .register(meterRegistry);
+        this.overBudget = Counter.builder("filmorate.jdbc.statements.over.budget")
+                .description("HTTP requests that exceeded the JDBC statement budget")
+                .register(meterRegistry);
+    }
+
+    @Bean
+    static BeanPostProcessor jdbcStatementCounterPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource))
+                    return new CountingDataSource(dataSource);
+                return bean;
+            }
+        };
+    }
+
+    public void begin() {
+        STATEMENTS.set(new int[1]);
+    }
+
+    public int end(String request) {
+        int[] statements = STATEMENTS.get();
+        STATEMENTS.remove();
+        if (statements == null)
+            return 0;
+        perRequest.record(statements[0]);
+        if (statements[0] > budget) {
+            overBudget.increment();
+            log.warn("{} executed {} JDBC statements, budget is {}", request, statements[0], budget);
+        }
+        return statements[0];
+    }
+
+    private static Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (STATEMENT_METHODS.contains(method.getName())) {
+                        int[] statements = STATEMENTS.get();
+                        if (statements != null)
+                            statements[0]++;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    static final class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+public class StorageMetrics {
+    private static final String TIMER_NAME = "filmorate.storage";
+    private static final String SUCCESS = "success";
+
+    @Bean
+    static BeanPostProcessor storageMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof FilmStorage || bean instanceof UserStorage))
+                    return bean;
+                ProxyFactory proxyFactory = new ProxyFactory(bean);
+                proxyFactory.setProxyTargetClass(true);
+                proxyFactory.addAdvice(new TimingInterceptor(meterRegistry, beanName));
+                return proxyFactory.getProxy();
+            }
+        };
+    }
+
+    // Timers are registered once per method and outcome; a call only looks its timer up.
+    private static final class TimingInterceptor implements MethodInterceptor {
+        private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+        private final String storage;
+        private final ConcurrentMap<Method, Timer> successes = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Method, ConcurrentMap<Class<?>, Timer>> failures = new ConcurrentHashMap<>();
+        private volatile MeterRegistry meterRegistry;
+
+        private TimingInterceptor(ObjectProvider<MeterRegistry> meterRegistryProvider, String storage) {
+            this.meterRegistryProvider = meterRegistryProvider;
+            this.storage = storage;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            if (method.getDeclaringClass() == Object.class)
+                return invocation.proceed();
+            Timer.Sample sample = Timer.start(meterRegistry());
+            try {
+                Object result = invocation.proceed();
+                sample.stop(successTimer(method));
+                return result;
+            } catch (Throwable e) {
+                sample.stop(failures.computeIfAbsent(method, key -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(e.getClass(), type -> timer(method, type.getSimpleName())));
+                throw e;
+            }
+        }
+
+        private Timer successTimer(Method method) {
+            Timer timer = successes.get(method);
+            return timer != null ? timer : successes.computeIfAbsent(method, key -> timer(key, SUCCESS));
+        }
+
+        private MeterRegistry meterRegistry() {
+            MeterRegistry registry = meterRegistry;
+            if (registry == null) {
+                registry = meterRegistryProvider.getObject();
+                meterRegistry = registry;
+            }
+            return registry;
+        }
+
+        private Timer timer(Method method, String outcome) {
+            return Timer.builder(TIMER_NAME)
+                    .description("Storage method latency")
+                    .tag("storage", storage)
+                    .tag("method", method.getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
+
+@Slf4j
+@Component
+@DependsOn("likeWriteBehind") // rebuild only after the like journal has been replayed
+@RequiredArgsConstructor
+public class CoLikeIndex {
+    private static final int NEIGHBOURS_CAPACITY = 100;
+    private static final int REBUILD_PARTITIONS = 16;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<Long, Neighbours> neighbours = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Neighbours> rebuilt = new ConcurrentHashMap<>();
+        IntStream.range(0, REBUILD_PARTITIONS)
+                .parallel()
+                .forEach(partition -> rebuilt.putAll(rebuildPartition(partition)));
+        neighbours.clear();
+        neighbours.putAll(rebuilt);
+        log.info("Co-like index rebuilt for {} films", rebuilt.size());
+    }
+
+    private Map<Long, Neighbours> rebuildPartition(int partition) {
+        String sqlQuery = "select l1.film_id, l2.film_id as other_id, COUNT(*) as co_likes " +
+                "from likes as l1 join likes as l2 on l1.user_id = l2.user_id and l1.film_id <> l2.film_id " +
+                "where MOD(l1.film_id, ?) = ? " +
+                "group by l1.film_id, l2.film_id order by l1.film_id, co_likes desc";
+        Map<Long, Neighbours> partitionNeighbours = new HashMap<>();
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> partitionNeighbours
+                        .computeIfAbsent(resultSet.getLong("film_id"), filmId -> new Neighbours())
+                        .seed(resultSet.getLong("other_id"), resultSet.getLong("co_likes")),
+                REBUILD_PARTITIONS, partition);
+        return partitionNeighbours;
+    }
+
+    public void onLike(long filmId, Collection<Long> otherFilmIds) {
+        for (Long otherId : otherFilmIds) {
+            if (otherId == filmId)
+                continue;
+            neighbours.computeIfAbsent(filmId, id -> new Neighbours()).add(otherId, 1);
+            neighbours.computeIfAbsent(otherId, id -> new Neighbours()).add(filmId, 1);
+        }
+    }
+
+    public void onUnlike(long filmId, Collection<Long> otherFilmIds) {
+        for (Long otherId : otherFilmIds) {
+            if (otherId == filmId)
+                continue;
+            Neighbours filmNeighbours = neighbours.get(filmId);
+            if (filmNeighbours != null)
+                filmNeighbours.add(otherId, -1);
+            Neighbours otherNeighbours = neighbours.get(otherId);
+            if (otherNeighbours != null)
+                otherNeighbours.add(filmId, -1);
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        neighbours.remove(filmId);
+        neighbours.values().forEach(filmNeighbours -> filmNeighbours.remove(filmId));
+    }
+
+    public List<Long> getSimilar(long filmId, int max) {
+        Neighbours filmNeighbours = neighbours.get(filmId);
+        return filmNeighbours == null ? List.of() : filmNeighbours.top(max);
+    }
+
+    private static final class Neighbours {
+        private final Map<Long, Long> counts = new HashMap<>();
+
+        synchronized void add(long otherId, long delta) {
+            Long count = counts.get(otherId);
+            if (count != null) {
+                if (delta < 0 && count + delta <= 0) {
+                    counts.remove(otherId);
+                } else {
+                    counts.put(otherId, count + delta);
+                }
+                return;
+            }
+            if (delta <= 0)
+                return;
+            if (counts.size() < NEIGHBOURS_CAPACITY) {
+                counts.put(otherId, delta);
+                return;
+            }
+            Map.Entry<Long, Long> weakest = null;
+            for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+                if (weakest == null || entry.getValue() < weakest.getValue())
+                    weakest = entry;
+            }
+            long weakestCount = weakest.getValue();
+            counts.remove(weakest.getKey());
+            counts.put(otherId, weakestCount + delta);
+        }
+
+        synchronized void seed(long otherId, long count) {
+            if (counts.size() < NEIGHBOURS_CAPACITY)
+                counts.put(otherId, count);
+        }
+
+        synchronized void remove(long otherId) {
+            counts.remove(otherId);
+        }
+
+        synchronized List<Long> top(int max) {
+            return counts.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Long>comparingByValue()
+                            .reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(max)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+    }
+}
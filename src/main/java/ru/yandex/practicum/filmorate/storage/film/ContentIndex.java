@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContentIndex {
+    private static final double GENRE_WEIGHT = 0.6;
+    private static final double RATING_WEIGHT = 0.25;
+    private static final double RELEASE_WEIGHT = 0.15;
+    private static final double DAYS_IN_YEAR = 365.25;
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<Long, Features> features = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void rebuild() {
+        features.clear();
+        String sqlQuery = "select f.id, f.rating_id, f.release_date, fg.genre_id from films as f " +
+                "left join film_genres as fg on fg.film_id = f.id";
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> {
+            long genreBit = genreBit(resultSet.getLong("genre_id"));
+            Features film = new Features(resultSet.getLong("id"), genreBit, resultSet.getLong("rating_id"),
+                    resultSet.getDate("release_date").toLocalDate().toEpochDay());
+            features.merge(film.filmId(), film, (current, added) -> new Features(current.filmId(),
+                    current.genreMask() | added.genreMask(), current.ratingId(), current.releaseDay()));
+        });
+        version.incrementAndGet();
+        log.info("Content index rebuilt for {} films", features.size());
+    }
+
+    public void update(long filmId, Film film) {
+        features.put(filmId, featuresOf(filmId, film));
+        version.incrementAndGet();
+    }
+
+    public void remove(long filmId) {
+        features.remove(filmId);
+        version.incrementAndGet();
+    }
+
+    public List<Long> getSimilar(long filmId, int max) {
+        Features target = features.get(filmId);
+        if (target == null)
+            return List.of();
+        Snapshot current = snapshot();
+        double[] scores = new double[current.filmIds().length];
+        IntStream indexes = IntStream.range(0, scores.length);
+        if (scores.length >= PARALLEL_THRESHOLD)
+            indexes = indexes.parallel();
+        indexes.forEach(i -> scores[i] = score(target.genreMask(), target.ratingId(), target.releaseDay(),
+                current.genreMasks()[i], current.ratingIds()[i], current.releaseDays()[i]));
+        return top(current.filmIds(), scores, filmId, max);
+    }
+
+    static Features featuresOf(long filmId, Film film) {
+        long genreMask = 0;
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                genreMask |= genreBit(genre.getId());
+            }
+        }
+        return new Features(filmId, genreMask, film.getMpa() == null ? 0 : film.getMpa().getId(),
+                film.getReleaseDate().toEpochDay());
+    }
+
+    static double score(Features target, Features other) {
+        return score(target.genreMask(), target.ratingId(), target.releaseDay(),
+                other.genreMask(), other.ratingId(), other.releaseDay());
+    }
+
+    private static double score(long genreMask, long ratingId, long releaseDay,
+                                long otherGenreMask, long otherRatingId, long otherReleaseDay) {
+        long union = genreMask | otherGenreMask;
+        double genres = union == 0 ? 0 : (double) Long.bitCount(genreMask & otherGenreMask) / Long.bitCount(union);
+        double rating = ratingId == otherRatingId ? 1 : 0;
+        double release = 1 / (1 + Math.abs(releaseDay - otherReleaseDay) / DAYS_IN_YEAR);
+        return GENRE_WEIGHT * genres + RATING_WEIGHT * rating + RELEASE_WEIGHT * release;
+    }
+
+    static List<Long> top(long[] filmIds, double[] scores, long excludedId, int max) {
+        PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.<Integer>comparingDouble(i -> scores[i])
+                .thenComparing(Comparator.<Integer>comparingLong(i -> filmIds[i]).reversed()));
+        for (int i = 0; i < filmIds.length; i++) {
+            if (filmIds[i] == excludedId)
+                continue;
+            best.add(i);
+            if (best.size() > max)
+                best.poll();
+        }
+        List<Long> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(filmIds[best.poll()]);
+        }
+        return result.reversed();
+    }
+
+    private static long genreBit(long genreId) {
+        return genreId > 0 && genreId <= Long.SIZE ? 1L << (genreId - 1) : 0;
+    }
+
+    private Snapshot snapshot() {
+        long currentVersion = version.get();
+        Snapshot current = snapshot;
+        if (current == null || current.version() != currentVersion) {
+            current = Snapshot.of(currentVersion, features.values());
+            snapshot = current;
+        }
+        return current;
+    }
+
+    record Features(long filmId, long genreMask, long ratingId, long releaseDay) {
+    }
+
+    private record Snapshot(long version, long[] filmIds, long[] genreMasks, long[] ratingIds, long[] releaseDays) {
+        static Snapshot of(long version, Collection<Features> films) {
+            List<Features> copy = new ArrayList<>(films);
+            Snapshot snapshot = new Snapshot(version, new long[copy.size()], new long[copy.size()],
+                    new long[copy.size()], new long[copy.size()]);
+            for (int i = 0; i < copy.size(); i++) {
+                Features film = copy.get(i);
+                snapshot.filmIds()[i] = film.filmId();
+                snapshot.genreMasks()[i] = film.genreMask();
+                snapshot.ratingIds()[i] = film.ratingId();
+                snapshot.releaseDays()[i] = film.releaseDay();
+            }
+            return snapshot;
+        }
+    }
+}
@@ -2,80 +2,134 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Primary
 @Component("FilmDbStorage")
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
+    private static final String FILM_QUERY = "select f.id, f.title, f.description, f.release_date, f.duration, " +
+            "f.rating_id from films as f ";
+    private static final int BATCH_SIZE = 1000;
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final int WRITE_BATCH_SIZE = 5000;
+    private static final int RECOMMENDATIONS_DEPTH = 100;
     private final UserStorage userStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceDataCache;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final TransactionTemplate transactionTemplate;
+    private final CoLikeIndex coLikeIndex;
+    private final RecommendationCache recommendationCache;
+    private final ContentIndex contentIndex;
+    private final LikeWriteBehind likeWriteBehind;
+    private final EntityCache entityCache;
 
     private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
-        long filmId = resultSet.getLong("id");
         return Film.builder()
-                .id(filmId)
+                .id(resultSet.getLong("id"))
                 .name(resultSet.getString("title"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .description(resultSet.getString("description"))
                 .duration(resultSet.getLong("duration"))
-                .mpa(getFilmRating(resultSet.getLong("rating_id")))
-                .genres(getFilmGenres(filmId))
-                .likesCount(getFilmLikesCount(filmId))
+                .mpa(referenceDataCache.findRating(resultSet.getLong("rating_id")))
+                .genres(new ArrayList<>())
+                .likesCount(0L)
                 .build();
     }
 
-    private Long getFilmLikesCount(long filmId) {
-        String sqlQuery = "select COUNT(film_id) as likes_count from likes where film_id = ?";
-        return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToLikesCount, filmId);
+    private List<Film> loadFilms(String sqlQuery, Object... args) {
+        List<Film> films = jdbcTemplate.query(sqlQuery, this::mapRowToFilm, args);
+        hydrateFilms(films);
+        return films;
     }
 
-    private Long mapRowToLikesCount(ResultSet resultSet, int rowNum) throws SQLException {
-        return resultSet.getLong("likes_count");
+    private List<Film> getFilmsByIds(List<Long> ids) {
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (List<Long> chunk : chunks(ids)) {
+            String sqlQuery = FILM_QUERY + "where f.id in (" + placeholders(chunk.size()) + ")";
+            for (Film film : jdbcTemplate.query(sqlQuery, this::mapRowToFilm, chunk.toArray())) {
+                filmsById.put(film.getId(), film);
+            }
+        }
+        List<Film> films = ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        hydrateFilms(films);
+        return films;
     }
 
-    private List<Genre> getFilmGenres(long filmId) {
-        String sqlQuery = "select g.id, g.name from film_genres as fg JOIN genres as g ON fg.genre_id = g.id " +
-                "where fg.film_id = ? ORDER BY g.id";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToGenre, filmId);
+    private void hydrateFilms(List<Film> films) {
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        for (List<Long> chunk : chunks(new ArrayList<>(filmsById.keySet()))) {
+            loadFilmGenres(chunk, filmsById);
+            loadFilmLikesCounts(chunk, filmsById);
+        }
     }
 
-    private Genre mapRowToGenre(ResultSet resultSet, int rowNum) throws SQLException {
-        return Genre.builder()
-                .id(resultSet.getLong("id"))
-                .name(resultSet.getString("name"))
-                .build();
+    private void loadFilmGenres(List<Long> filmIds, Map<Long, Film> filmsById) {
+        String sqlQuery = "select film_id, genre_id from film_genres " +
+                "where film_id in (" + placeholders(filmIds.size()) + ") ORDER BY film_id, genre_id";
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> filmsById.get(resultSet.getLong("film_id"))
+                .getGenres()
+                .add(referenceDataCache.findGenre(resultSet.getLong("genre_id"))), filmIds.toArray());
     }
 
-    private Rating getFilmRating(long ratingId) {
-        String sqlQuery = "select id, name from ratings where id = ?";
-        return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToRating, ratingId);
+    private void loadFilmLikesCounts(List<Long> filmIds, Map<Long, Film> filmsById) {
+        String sqlQuery = "select film_id, COUNT(user_id) as likes_count from likes " +
+                "where film_id in (" + placeholders(filmIds.size()) + ") group by film_id";
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> filmsById.get(resultSet.getLong("film_id"))
+                .setLikesCount(resultSet.getLong("likes_count")), filmIds.toArray());
     }
 
-    private Rating mapRowToRating(ResultSet resultSet, int rowNum) throws SQLException {
-        return Rating.builder()
-                .id(resultSet.getLong("id"))
-                .name(resultSet.getString("name"))
-                .build();
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 
     @Override
@@ -86,17 +140,82 @@ public class FilmDbStorage implements FilmStorage {
                 .usingGeneratedKeyColumns("id");
         long filmId = simpleJdbcInsert.executeAndReturnKey(film.toMap()).longValue();
 
-        if (film.getGenres() != null) {
-            String sqlQuery = "insert into film_genres (film_id, genre_id) " +
-                    "values (?, ?)";
-            Set<Genre> genreSet = new HashSet<>(film.getGenres());
-            for (Genre genre : genreSet) {
-                jdbcTemplate.update(sqlQuery,
-                        filmId,
-                        genre.getId());
+        List<Object[]> filmGenres = new ArrayList<>();
+        addFilmGenreRows(filmGenres, filmId, film);
+        insertFilmGenres(filmGenres);
+        popularityLeaderboard.register(filmId);
+        contentIndex.update(filmId, film);
+        return getFilmById(filmId);
+    }
+
+    @Override
+    public List<Long> addFilms(List<Film> films) {
+        films.forEach(this::validateFilm);
+        List<Long> filmIds = new ArrayList<>(films.size());
+        for (int from = 0; from < films.size(); from += BATCH_SIZE) {
+            List<Film> chunk = films.subList(from, Math.min(from + BATCH_SIZE, films.size()));
+            List<Long> chunkIds = transactionTemplate.execute(status -> insertFilms(chunk));
+            chunkIds.forEach(popularityLeaderboard::register);
+            for (int i = 0; i < chunk.size(); i++) {
+                contentIndex.update(chunkIds.get(i), chunk.get(i));
             }
+            filmIds.addAll(chunkIds);
         }
-        return getFilmById(filmId);
+        return filmIds;
+    }
+
+    private List<Long> insertFilms(List<Film> films) {
+        String sqlQuery = "insert into films (title, description, release_date, duration, rating_id) " +
+                "values (?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sqlQuery, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        Film film = films.get(i);
+                        statement.setString(1, film.getName());
+                        statement.setString(2, film.getDescription());
+                        statement.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        statement.setLong(4, film.getDuration());
+                        statement.setLong(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Long> filmIds = keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.values().iterator().next()).longValue())
+                .toList();
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            addFilmGenreRows(filmGenres, filmIds.get(i), films.get(i));
+        }
+        insertFilmGenres(filmGenres);
+        return filmIds;
+    }
+
+    private void addFilmGenreRows(List<Object[]> rows, long filmId, Film film) {
+        if (film.getGenres() == null)
+            return;
+        Set<Long> genreIds = new LinkedHashSet<>();
+        for (Genre genre : film.getGenres()) {
+            genreIds.add(genre.getId());
+        }
+        for (Long genreId : genreIds) {
+            rows.add(new Object[]{filmId, genreId});
+        }
+    }
+
+    private void insertFilmGenres(List<Object[]> rows) {
+        if (rows.isEmpty())
+            return;
+        String sqlQuery = "merge into film_genres as fg " +
+                "using (values (cast(? as integer), cast(? as integer))) as v(film_id, genre_id) " +
+                "on fg.film_id = v.film_id and fg.genre_id = v.genre_id " +
+                "when not matched then insert (film_id, genre_id) values (v.film_id, v.genre_id)";
+        jdbcTemplate.batchUpdate(sqlQuery, rows);
     }
 
     @Override
@@ -112,43 +231,82 @@ public class FilmDbStorage implements FilmStorage {
                 film.getDuration(),
                 film.getMpa().getId(),
                 film.getId());
-        return getFilmById(film.getId());
+        entityCache.invalidateFilm(film.getId());
+        Film updated = getFilmById(film.getId());
+        contentIndex.update(updated.getId(), updated);
+        return updated;
     }
 
     @Override
     public void removeFilm(Film film) {
         String sqlQuery = "delete from films where id = ?";
         jdbcTemplate.update(sqlQuery, film.getId());
+        entityCache.invalidateFilm(film.getId());
+        popularityLeaderboard.unregister(film.getId());
+        coLikeIndex.removeFilm(film.getId());
+        contentIndex.remove(film.getId());
+        recommendationCache.invalidateAll();
     }
 
     @Override
     public Film getFilmById(long id) {
-        try {
-            String sqlQuery = "select id, title, description, release_date, duration, rating_id " +
-                    "from films where id = ?";
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToFilm, id);
-        } catch (EmptyResultDataAccessException e) {
+        return entityCache.getFilm(id, this::loadFilmById);
+    }
+
+    private Film loadFilmById(long id) {
+        List<Film> films = loadFilms(FILM_QUERY + "where f.id = ?", id);
+        if (films.isEmpty())
             throw new NotFoundException("Film with id " + id + " not found");
-        }
+        return films.getFirst();
     }
 
     @Override
     public List<Film> getFilms() {
-        String sqlQuery = "select id, title, description, release_date, duration, rating_id " +
-                "from films";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFilm);
+        return loadFilms(FILM_QUERY + "order by f.id");
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return loadFilms(FILM_QUERY + "where f.id > ? order by f.id limit ?", after, limit);
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        long after = 0;
+        List<Film> page;
+        do {
+            page = jdbcTemplate.query(FilmExport.PAGE,
+                    (resultSet, rowNum) -> FilmExport.mapRow(resultSet::getObject, referenceDataCache),
+                    after, EXPORT_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty())
+                after = page.getLast().getId();
+        } while (page.size() == EXPORT_PAGE_SIZE);
     }
 
     @Override
     public Film addLike(long filmId, long userId) {
         Film film = getFilmById(filmId);
         User user = userStorage.getUserById(userId);
-        String sqlQuery = "insert into likes (film_id, user_id) " +
-                "values (?, ?)";
-        jdbcTemplate.update(sqlQuery,
-                film.getId(),
-                user.getId());
-        return getFilmById(filmId);
+        int added;
+        if (likeWriteBehind.isEnabled()) {
+            added = likeWriteBehind.like(film.getId(), user.getId()) ? 1 : 0;
+        } else {
+            String sqlQuery = "merge into likes as l " +
+                    "using (values (cast(? as integer), cast(? as integer))) as v(film_id, user_id) " +
+                    "on l.film_id = v.film_id and l.user_id = v.user_id " +
+                    "when not matched then insert (film_id, user_id) values (v.film_id, v.user_id)";
+            added = jdbcTemplate.update(sqlQuery,
+                    film.getId(),
+                    user.getId());
+        }
+        if (added > 0)
+            entityCache.invalidateFilm(filmId);
+        popularityLeaderboard.adjust(filmId, added);
+        if (added > 0)
+            coLikeIndex.onLike(filmId, getLikedFilmIds(userId));
+        recommendationCache.invalidateLikes(userId);
+        return getLikedFilm(filmId);
     }
 
     @Override
@@ -156,51 +314,208 @@ public class FilmDbStorage implements FilmStorage {
         Film film = getFilmById(filmId);
         User user = userStorage.getUserById(userId);
 
-        String sqlQuery = "delete from likes where film_id = ? and user_id = ?";
-        jdbcTemplate.update(sqlQuery, film.getId(), user.getId());
+        int removed;
+        if (likeWriteBehind.isEnabled()) {
+            removed = likeWriteBehind.unlike(film.getId(), user.getId()) ? 1 : 0;
+        } else {
+            String sqlQuery = "delete from likes where film_id = ? and user_id = ?";
+            removed = jdbcTemplate.update(sqlQuery, film.getId(), user.getId());
+        }
+        if (removed > 0)
+            entityCache.invalidateFilm(filmId);
+        popularityLeaderboard.adjust(filmId, -removed);
+        if (removed > 0)
+            coLikeIndex.onUnlike(filmId, getLikedFilmIds(userId));
+        recommendationCache.invalidateLikes(userId);
 
-        return getFilmById(filmId);
+        return getLikedFilm(filmId);
+    }
+
+    private Film getLikedFilm(long filmId) {
+        Film film = getFilmById(filmId);
+        if (likeWriteBehind.isEnabled())
+            film.setLikesCount(popularityLeaderboard.getLikesCount(filmId));
+        return film;
+    }
+
+    @Override
+    public BatchResult addLikes(List<FilmLike> likes) {
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (FilmLike like : likes) {
+            filmIds.add(like.getFilmId());
+            userIds.add(like.getUserId());
+        }
+        Set<Long> existingFilmIds = getExistingFilmIds(new ArrayList<>(filmIds));
+        Set<Long> existingUserIds = userStorage.getExistingUserIds(userIds);
+
+        BatchResult result = BatchResult.builder().build();
+        List<FilmLike> accepted = new ArrayList<>();
+        for (int i = 0; i < likes.size(); i++) {
+            FilmLike like = likes.get(i);
+            if (!existingFilmIds.contains(like.getFilmId())) {
+                result.addFailure(i, "Film with id " + like.getFilmId() + " not found");
+            } else if (!existingUserIds.contains(like.getUserId())) {
+                result.addFailure(i, "User with id " + like.getUserId() + " not found");
+            } else {
+                accepted.add(like);
+            }
+        }
+
+        String sqlQuery = "merge into likes as l " +
+                "using (values (cast(? as integer), cast(? as integer))) as v(film_id, user_id) " +
+                "on l.film_id = v.film_id and l.user_id = v.user_id " +
+                "when not matched then insert (film_id, user_id) values (v.film_id, v.user_id)";
+        for (int from = 0; from < accepted.size(); from += WRITE_BATCH_SIZE) {
+            List<FilmLike> chunk = accepted.subList(from, Math.min(from + WRITE_BATCH_SIZE, accepted.size()));
+            boolean[] changed;
+            if (likeWriteBehind.isEnabled()) {
+                changed = likeWriteBehind.likeAll(chunk);
+            } else {
+                List<Object[]> rows = new ArrayList<>(chunk.size());
+                for (FilmLike like : chunk) {
+                    rows.add(new Object[]{like.getFilmId(), like.getUserId()});
+                }
+                int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sqlQuery, rows));
+                changed = new boolean[chunk.size()];
+                for (int i = 0; i < chunk.size(); i++) {
+                    changed[i] = counts != null && counts[i] != 0;
+                }
+            }
+            List<FilmLike> added = new ArrayList<>();
+            Map<Long, Long> likesDelta = new HashMap<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (!changed[i])
+                    continue;
+                added.add(chunk.get(i));
+                likesDelta.merge(chunk.get(i).getFilmId(), 1L, Long::sum);
+            }
+            entityCache.invalidateFilms(likesDelta.keySet());
+            likesDelta.forEach(popularityLeaderboard::adjust);
+            updateCoLikes(added);
+        }
+        result.setAccepted(accepted.size());
+        return result;
+    }
+
+    private void updateCoLikes(List<FilmLike> addedLikes) {
+        Map<Long, Set<Long>> addedByUser = new HashMap<>();
+        for (FilmLike like : addedLikes) {
+            addedByUser.computeIfAbsent(like.getUserId(), userId -> new LinkedHashSet<>()).add(like.getFilmId());
+        }
+        Map<Long, Set<Long>> likedByUser = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(addedByUser.keySet()))) {
+            String sqlQuery = "select user_id, film_id from likes where user_id in (" + placeholders(chunk.size()) + ")";
+            jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> likedByUser
+                    .computeIfAbsent(resultSet.getLong("user_id"), userId -> new HashSet<>())
+                    .add(resultSet.getLong("film_id")), chunk.toArray());
+        }
+        addedByUser.forEach((userId, added) -> {
+            recommendationCache.invalidateLikes(userId);
+            Set<Long> likedBefore = likeWriteBehind.likedFilmIds(userId, likedByUser.getOrDefault(userId, Set.of()));
+            likedBefore.removeAll(added);
+            for (Long filmId : added) {
+                coLikeIndex.onLike(filmId, likedBefore);
+                likedBefore.add(filmId);
+            }
+        });
+    }
+
+    private Set<Long> getLikedFilmIds(long userId) {
+        String sqlQuery = "select film_id from likes where user_id = ?";
+        return likeWriteBehind.likedFilmIds(userId, jdbcTemplate.queryForList(sqlQuery, Long.class, userId));
+    }
+
+    @Override
+    public List<Film> getRecommendations(long userId, int max) {
+        if (userStorage.getExistingUserIds(List.of(userId)).isEmpty())
+            throw new NotFoundException("User with id " + userId + " not found");
+        List<Long> filmIds = recommendationCache.get(userId, this::findRecommendedFilmIds);
+        return getFilmsByIds(filmIds.subList(0, Math.min(max, filmIds.size())));
+    }
+
+    private List<Long> findRecommendedFilmIds(long userId) {
+        String sqlQuery = "select l.film_id from friends as f join likes as l on l.user_id = f.friend_id " +
+                "where f.user_id = ? and not exists " +
+                "(select 1 from likes as own where own.user_id = f.user_id and own.film_id = l.film_id) " +
+                "group by l.film_id order by COUNT(*) desc, l.film_id limit ?";
+        return jdbcTemplate.queryForList(sqlQuery, Long.class, userId, RECOMMENDATIONS_DEPTH);
+    }
+
+    @Override
+    public List<Film> getSimilarFilms(long id, int max) {
+        getFilmById(id);
+        return getFilmsByIds(coLikeIndex.getSimilar(id, max));
+    }
+
+    private Set<Long> getExistingFilmIds(List<Long> ids) {
+        Set<Long> existingIds = new HashSet<>();
+        for (List<Long> chunk : chunks(ids)) {
+            String sqlQuery = "select id from films where id in (" + placeholders(chunk.size()) + ")";
+            existingIds.addAll(jdbcTemplate.queryForList(sqlQuery, Long.class, chunk.toArray()));
+        }
+        return existingIds;
+    }
+
+    @Override
+    public List<Film> getContentSimilarFilms(long id, int max) {
+        getFilmById(id);
+        return getFilmsByIds(contentIndex.getSimilar(id, max));
     }
 
     @Override
     public List<Genre> getGenres() {
-        String sqlQuery = "select id, name from genres";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToGenre);
+        return referenceDataCache.getGenres();
     }
 
     @Override
     public Genre getGenreById(long id) {
-        String sqlQuery = "select id, name from genres where id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToGenre, id);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("no such genre id");
-        }
+        return referenceDataCache.getGenre(id);
     }
 
     @Override
     public List<Rating> getMpa() {
-        String sqlQuery = "select id, name from ratings";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToRating);
+        return referenceDataCache.getRatings();
     }
 
     @Override
     public Rating getMpaById(long id) {
-        String sqlQuery = "select id, name from ratings where id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToRating, id);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("no such rating id");
-        }
+        return referenceDataCache.getRating(id);
     }
 
     @Override
     public List<Film> getPopularFilms(int max) {
-        return getFilms().stream()
-                .sorted(Comparator.comparing(Film::getLikesCount)
-                        .reversed())
+        return getFilmsByIds(popularityLeaderboard.top(max));
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int max, Long genreId, Long mpaId, Integer year) {
+        if (genreId == null && mpaId == null && year == null)
+            return getPopularFilms(max);
+        StringBuilder sqlQuery = new StringBuilder("select f.id from films as f where 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (genreId != null) {
+            sqlQuery.append(" and exists (select 1 from film_genres as fg " +
+                    "where fg.film_id = f.id and fg.genre_id = ?)");
+            args.add(genreId);
+        }
+        if (mpaId != null) {
+            sqlQuery.append(" and f.rating_id = ?");
+            args.add(mpaId);
+        }
+        if (year != null) {
+            sqlQuery.append(" and f.release_date >= ? and f.release_date < ?");
+            args.add(LocalDate.of(year, 1, 1));
+            args.add(LocalDate.of(year + 1, 1, 1));
+        }
+        // Order by the leaderboard rather than COUNT(likes) so pending write-behind likes are ranked too.
+        List<Long> filmIds = jdbcTemplate.queryForList(sqlQuery.toString(), Long.class, args.toArray()).stream()
+                .sorted(Comparator.<Long>comparingLong(popularityLeaderboard::getLikesCount)
+                        .reversed()
+                        .thenComparingLong(Long::longValue))
                 .limit(max)
-                .collect(Collectors.toList());
+                .toList();
+        return getFilmsByIds(filmIds);
     }
 
     private void validateFilm(Film film) {
@@ -213,11 +528,11 @@ public class FilmDbStorage implements FilmStorage {
             throw new ValidationException("дата создания фильма не должна быть раньше 28 декабря 1895");
         if (film.getDuration() <= 0)
             throw new ValidationException("длительность фильма не может быть отрицательной");
-        if (film.getMpa().getId() < 1 || film.getMpa().getId() > 5)
+        if (!referenceDataCache.hasRating(film.getMpa().getId()))
             throw new NotFoundException("такого рейтинга не предусмотрено");
         if (film.getGenres() != null) {
             for (Genre genre : film.getGenres()) {
-                if (genre.getId() < 1 || genre.getId() > 6) {
+                if (!referenceDataCache.hasGenre(genre.getId())) {
                     throw new NotFoundException("такого жанра не предусмотрено");
                 }
             }
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.ExportRow;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+final class FilmExport {
+    private static final String SELECT = "select f.id, f.title, f.description, f.release_date, f.duration, " +
+            "f.rating_id, (select COUNT(l.user_id) from likes as l where l.film_id = f.id) as likes_count, " +
+            "(select LISTAGG(fg.genre_id, ',') WITHIN GROUP (ORDER BY fg.genre_id) " +
+            "from film_genres as fg where fg.film_id = f.id) as genre_ids " +
+            "from films as f ";
+    static final String ALL = SELECT + "order by f.id";
+    static final String PAGE = SELECT + "where f.id > ? order by f.id limit ?";
+
+    private FilmExport() {
+    }
+
+    static <E extends Exception> Film mapRow(ExportRow<E> row, ReferenceDataCache referenceDataCache) throws E {
+        Film film = Film.builder()
+                .id(row.get("id", Integer.class))
+                .name(row.get("title", String.class))
+                .releaseDate(row.get("release_date", LocalDate.class))
+                .description(row.get("description", String.class))
+                .duration(row.get("duration", Integer.class))
+                .mpa(referenceDataCache.findRating(row.get("rating_id", Integer.class)))
+                .genres(new ArrayList<>())
+                .likesCount(row.get("likes_count", Long.class))
+                .build();
+        String genreIds = row.get("genre_ids", String.class);
+        if (genreIds != null) {
+            for (String genreId : genreIds.split(",")) {
+                film.getGenres().add(referenceDataCache.findGenre(Long.parseLong(genreId)));
+            }
+        }
+        return film;
+    }
+}
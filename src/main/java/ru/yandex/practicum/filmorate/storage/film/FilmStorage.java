@@ -1,14 +1,19 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film addFilm(Film film);
 
+    List<Long> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     void removeFilm(Film film);
@@ -17,12 +22,26 @@ public interface FilmStorage {
 
     List<Film> getFilms();
 
+    List<Film> getFilms(long after, int limit);
+
+    void exportFilms(Consumer<Film> consumer);
+
     List<Film> getPopularFilms(int max);
 
+    List<Film> getPopularFilms(int max, Long genreId, Long mpaId, Integer year);
+
     Film addLike(long filmId, long userId);
 
     Film removeLike(long filmId, long userId);
 
+    BatchResult addLikes(List<FilmLike> likes);
+
+    List<Film> getSimilarFilms(long id, int max);
+
+    List<Film> getContentSimilarFilms(long id, int max);
+
+    List<Film> getRecommendations(long userId, int max);
+
     List<Genre> getGenres();
 
     Genre getGenreById(long id);
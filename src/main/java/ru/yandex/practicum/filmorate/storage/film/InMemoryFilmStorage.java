@@ -5,7 +5,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.model.User;
@@ -13,44 +15,91 @@ import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Component("InMemoryFilmStorage")
 @RequiredArgsConstructor
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+    private static final Comparator<Ranking> RANKING = Comparator.comparingLong(Ranking::likesCount)
+            .reversed()
+            .thenComparingLong(Ranking::filmId);
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final Object[] locks = IntStream.range(0, LOCK_STRIPES).mapToObj(i -> new Object()).toArray();
+    private final NavigableSet<Ranking> ranking = new ConcurrentSkipListSet<>(RANKING);
+    private final ConcurrentMap<Long, Set<Long>> filmsByGenre = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Long>> filmsByRating = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Long>> filmsByYear = new ConcurrentHashMap<>();
     private final UserStorage userStorage;
 
     @Override
     public Film addFilm(Film film) {
         validateFilm(film);
-        film.setId(getNextId());
-        films.put(film.getId(), film);
+        film.setId(lastId.incrementAndGet());
+        synchronized (lockFor(film.getId())) {
+            Set<Long> likes = ConcurrentHashMap.newKeySet();
+            if (film.getLikes() != null)
+                likes.addAll(film.getLikes());
+            film.setLikes(likes);
+            film.setLikesCount((long) likes.size());
+            films.put(film.getId(), film);
+            ranking.add(new Ranking(likes.size(), film.getId()));
+            index(film);
+        }
         log.info("Film added: {}", film);
         return film;
     }
 
+    @Override
+    public List<Long> addFilms(List<Film> films) {
+        films.forEach(this::validateFilm);
+        return films.stream()
+                .map(this::addFilm)
+                .map(Film::getId)
+                .toList();
+    }
+
     @Override
     public Film updateFilm(Film film) {
-        getFilmById(film.getId());
         validateFilm(film);
-        films.put(film.getId(), film);
+        synchronized (lockFor(film.getId())) {
+            Film current = getFilmById(film.getId());
+            film.setLikes(current.getLikes());
+            film.setLikesCount(current.getLikesCount());
+            unindex(current);
+            films.put(film.getId(), film);
+            index(film);
+        }
         log.info("Film updated: {}", film);
         return film;
     }
 
     @Override
     public void removeFilm(Film film) {
-        getFilmById(film.getId());
-        films.remove(film.getId());
+        synchronized (lockFor(film.getId())) {
+            Film current = getFilmById(film.getId());
+            films.remove(current.getId());
+            ranking.remove(new Ranking(current.getLikes().size(), current.getId()));
+            unindex(current);
+        }
         log.info("Film deleted: {}", film);
     }
 
     @Override
     public Film getFilmById(long id) {
-        if (films.containsKey(id))
-            return films.get(id);
+        Film film = films.get(id);
+        if (film != null)
+            return film;
         throw new NotFoundException("Фильм с id " + id + " не найден");
     }
 
@@ -59,35 +108,157 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return films.tailMap(after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
     @Override
     public List<Film> getPopularFilms(int max) {
-        return getFilms().stream()
-                .sorted(Comparator.comparing((Film film) -> film.getLikes() != null ? film.getLikes().size() : 0)
-                        .reversed())
+        // rerank adds before it removes, so a film may briefly hold two entries
+        Set<Long> filmIds = new LinkedHashSet<>();
+        List<Film> popular = new ArrayList<>(max);
+        for (Ranking entry : ranking) {
+            if (popular.size() >= max)
+                break;
+            Film film = films.get(entry.filmId());
+            if (film != null && filmIds.add(film.getId()))
+                popular.add(film);
+        }
+        return popular;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int max, Long genreId, Long mpaId, Integer year) {
+        List<Set<Long>> filters = new ArrayList<>();
+        if (genreId != null)
+            filters.add(filmsByGenre.getOrDefault(genreId, Set.of()));
+        if (mpaId != null)
+            filters.add(filmsByRating.getOrDefault(mpaId, Set.of()));
+        if (year != null)
+            filters.add(filmsByYear.getOrDefault(year, Set.of()));
+        if (filters.isEmpty())
+            return getPopularFilms(max);
+        filters.sort(Comparator.comparingInt(Set::size));
+        return filters.getFirst().stream()
+                .filter(filmId -> filters.stream().allMatch(filter -> filter.contains(filmId)))
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingLong((Film film) -> film.getLikes().size())
+                        .reversed()
+                        .thenComparingLong(Film::getId))
                 .limit(max)
                 .collect(Collectors.toList());
     }
 
     @Override
     public Film addLike(long filmId, long userId) {
-        Film film = getFilmById(filmId);
         User user = userStorage.getUserById(userId);
-
-        Set<Long> likes = film.getLikes();
-        likes.add(user.getId());
-        film.setLikes(likes);
-        return updateFilm(film);
+        synchronized (lockFor(filmId)) {
+            Film film = getFilmById(filmId);
+            int before = film.getLikes().size();
+            if (film.getLikes().add(user.getId()))
+                rerank(film, before);
+            return film;
+        }
     }
 
     @Override
     public Film removeLike(long filmId, long userId) {
-        Film film = getFilmById(filmId);
         User user = userStorage.getUserById(userId);
+        synchronized (lockFor(filmId)) {
+            Film film = getFilmById(filmId);
+            int before = film.getLikes().size();
+            if (film.getLikes().remove(user.getId()))
+                rerank(film, before);
+            return film;
+        }
+    }
+
+    @Override
+    public BatchResult addLikes(List<FilmLike> likes) {
+        BatchResult result = BatchResult.builder().build();
+        for (int i = 0; i < likes.size(); i++) {
+            try {
+                addLike(likes.get(i).getFilmId(), likes.get(i).getUserId());
+                result.setAccepted(result.getAccepted() + 1);
+            } catch (NotFoundException e) {
+                result.addFailure(i, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Film> getRecommendations(long userId, int max) {
+        Set<Long> friends = userStorage.getUserById(userId).getFriends();
+        Map<Long, Long> friendLikes = new HashMap<>();
+        for (Film film : films.values()) {
+            if (film.getLikes() == null || film.getLikes().contains(userId))
+                continue;
+            long count = film.getLikes().stream()
+                    .filter(friends::contains)
+                    .count();
+            if (count > 0)
+                friendLikes.put(film.getId(), count);
+        }
+        return friendLikes.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue()
+                        .reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(max)
+                .map(entry -> films.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getSimilarFilms(long id, int max) {
+        Set<Long> likers = getFilmById(id).getLikes();
+        if (likers == null)
+            return List.of();
+        Map<Long, Long> coLikes = new HashMap<>();
+        for (Film other : films.values()) {
+            if (other.getId() == id || other.getLikes() == null)
+                continue;
+            long count = other.getLikes().stream()
+                    .filter(likers::contains)
+                    .count();
+            if (count > 0)
+                coLikes.put(other.getId(), count);
+        }
+        return coLikes.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue()
+                        .reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(max)
+                .map(entry -> films.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        Set<Long> likes = film.getLikes();
-        likes.remove(user.getId());
-        film.setLikes(likes);
-        return updateFilm(film);
+    @Override
+    public List<Film> getContentSimilarFilms(long id, int max) {
+        ContentIndex.Features target = ContentIndex.featuresOf(id, getFilmById(id));
+        List<Film> snapshot = new ArrayList<>(films.values());
+        long[] filmIds = new long[snapshot.size()];
+        double[] scores = new double[snapshot.size()];
+        for (int i = 0; i < snapshot.size(); i++) {
+            Film film = snapshot.get(i);
+            filmIds[i] = film.getId();
+            scores[i] = ContentIndex.score(target, ContentIndex.featuresOf(film.getId(), film));
+        }
+        return ContentIndex.top(filmIds, scores, id, max).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -122,12 +293,47 @@ public class InMemoryFilmStorage implements FilmStorage {
             throw new ValidationException("длительность фильма не может быть отрицательной");
     }
 
-    private long getNextId() {
-        long currentMaxId = films.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    private Object lockFor(long filmId) {
+        return locks[(int) (filmId & (LOCK_STRIPES - 1))];
+    }
+
+    private void rerank(Film film, int before) {
+        int after = film.getLikes().size();
+        ranking.add(new Ranking(after, film.getId()));
+        ranking.remove(new Ranking(before, film.getId()));
+        film.setLikesCount((long) after);
+    }
+
+    private void index(Film film) {
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                filmsByGenre.computeIfAbsent(genre.getId(), id -> new ConcurrentSkipListSet<>()).add(film.getId());
+            }
+        }
+        if (film.getMpa() != null)
+            filmsByRating.computeIfAbsent(film.getMpa().getId(), id -> new ConcurrentSkipListSet<>()).add(film.getId());
+        filmsByYear.computeIfAbsent(film.getReleaseDate().getYear(), year -> new ConcurrentSkipListSet<>())
+                .add(film.getId());
+    }
+
+    private void unindex(Film film) {
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                removeFromIndex(filmsByGenre, genre.getId(), film.getId());
+            }
+        }
+        if (film.getMpa() != null)
+            removeFromIndex(filmsByRating, film.getMpa().getId(), film.getId());
+        removeFromIndex(filmsByYear, film.getReleaseDate().getYear(), film.getId());
+    }
+
+    private static <K> void removeFromIndex(ConcurrentMap<K, Set<Long>> index, K key, long filmId) {
+        index.computeIfPresent(key, (k, filmIds) -> {
+            filmIds.remove(filmId);
+            return filmIds.isEmpty() ? null : filmIds;
+        });
+    }
+
+    private record Ranking(long likesCount, long filmId) {
     }
 }
@@ -0,0 +1,414 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+public class LikeWriteBehind {
+    private static final String SEGMENT_PREFIX = "likes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int MAX_SYNC_BATCH = 1024;
+    private static final int LOCK_STRIPES = 64;
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+    private static final Comparator<LikeKey> BY_USER = Comparator.comparingLong(LikeKey::userId)
+            .thenComparingLong(LikeKey::filmId);
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityCache entityCache;
+    private final boolean enabled;
+    private final Path directory;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<LikeEvent> queue = new LinkedBlockingQueue<>();
+    // Events not yet handed to a flush, newest per (film, user); sorted by user for likedFilmIds.
+    private final ConcurrentSkipListMap<LikeKey, LikeEvent> pending = new ConcurrentSkipListMap<>(BY_USER);
+    // The batch being written by the current flush; stays visible to reads until it is committed.
+    private volatile NavigableMap<LikeKey, Boolean> inFlight = new TreeMap<>(BY_USER);
+    private final AtomicLong flushes = new AtomicLong();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Object journalLock = new Object();
+    private final List<Path> flushedSegments = new ArrayList<>();
+    private FileChannel segment;
+    private Path segmentPath;
+    private long segmentNumber;
+    private Thread journalWriter;
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    public LikeWriteBehind(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           EntityCache entityCache,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.journal-dir:./db/likes-journal}") String directory,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:1000}") long flushIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityCache = entityCache;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.flushIntervalMillis = flushIntervalMillis;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled)
+            return;
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        replay(segments);
+        segmentNumber = segments.isEmpty() ? 0 : segmentNumber(segments.getLast());
+        openNextSegment();
+        running = true;
+        journalWriter = Thread.ofPlatform()
+                .name("like-journal-writer")
+                .daemon()
+                .start(this::writeLoop);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> Thread.ofPlatform()
+                .name("like-journal-flusher")
+                .daemon()
+                .unstarted(runnable));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Like write-behind enabled, journal: {}", directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!running)
+            return;
+        running = false;
+        journalWriter.join();
+        flusher.shutdown();
+        flusher.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        flush();
+        synchronized (journalLock) {
+            segment.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean like(long filmId, long userId) {
+        return record(true, List.of(new LikeKey(filmId, userId)))[0];
+    }
+
+    public boolean unlike(long filmId, long userId) {
+        return record(false, List.of(new LikeKey(filmId, userId)))[0];
+    }
+
+    public boolean[] likeAll(List<FilmLike> likes) {
+        return record(true, likes.stream()
+                .map(like -> new LikeKey(like.getFilmId(), like.getUserId()))
+                .toList());
+    }
+
+    public Set<Long> likedFilmIds(long userId, Collection<Long> storedFilmIds) {
+        Set<Long> liked = new HashSet<>(storedFilmIds);
+        LikeKey from = new LikeKey(Long.MIN_VALUE, userId);
+        LikeKey to = new LikeKey(Long.MAX_VALUE, userId);
+        inFlight.subMap(from, true, to, true).forEach((key, like) -> mark(liked, key.filmId(), like));
+        pending.subMap(from, true, to, true).forEach((key, event) -> mark(liked, key.filmId(), event.like()));
+        return liked;
+    }
+
+    public synchronized void flush() {
+        List<Path> segments;
+        synchronized (journalLock) {
+            if (pending.isEmpty())
+                return;
+            try {
+                segment.close();
+                flushedSegments.add(segmentPath);
+                openNextSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments = new ArrayList<>(flushedSegments);
+        }
+        // Every event in a closed segment entered pending before it was written, so this copy covers them all.
+        Map<LikeKey, LikeEvent> events = new LinkedHashMap<>(pending);
+        NavigableMap<LikeKey, Boolean> batch = new TreeMap<>(BY_USER);
+        events.forEach((key, event) -> batch.put(key, event.like()));
+        inFlight = batch;
+        events.forEach(pending::remove);
+        try {
+            apply(batch);
+        } catch (RuntimeException e) {
+            events.forEach(pending::putIfAbsent);
+            inFlight = new TreeMap<>(BY_USER);
+            throw e;
+        }
+        flushes.incrementAndGet();
+        inFlight = new TreeMap<>(BY_USER);
+        entityCache.invalidateFilms(batch.keySet().stream()
+                .map(LikeKey::filmId)
+                .distinct()
+                .toList());
+        synchronized (journalLock) {
+            flushedSegments.removeAll(segments);
+        }
+        for (Path flushed : segments) {
+            try {
+                Files.deleteIfExists(flushed);
+            } catch (IOException e) {
+                log.warn("Could not delete flushed like journal {}: {}", flushed, e.getMessage());
+            }
+        }
+        log.debug("Flushed {} coalesced like events", batch.size());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Like journal flush failed: {}", e.getMessage());
+        }
+    }
+
+    private static void mark(Set<Long> liked, long filmId, boolean like) {
+        if (like) {
+            liked.add(filmId);
+        } else {
+            liked.remove(filmId);
+        }
+    }
+
+    private boolean[] record(boolean like, List<LikeKey> keys) {
+        if (!running)
+            throw new IllegalStateException("Like journal is not running");
+        long generation = flushes.get();
+        Set<LikeKey> stored = storedKeys(keys.stream()
+                .filter(key -> overlaid(key) == null)
+                .distinct()
+                .toList());
+        boolean[] changed = new boolean[keys.size()];
+        List<LikeEvent> events = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            LikeKey key = keys.get(i);
+            LikeEvent event = new LikeEvent(like, key.filmId(), key.userId(), new CompletableFuture<>());
+            changed[i] = enqueue(key, event, generation, stored.contains(key)) != like;
+            events.add(event);
+        }
+        RuntimeException failure = null;
+        for (LikeEvent event : events) {
+            try {
+                event.written().join();
+            } catch (CompletionException e) {
+                pending.remove(new LikeKey(event.filmId(), event.userId()), event);
+                failure = new IllegalStateException("Like journal write failed", e.getCause());
+            }
+        }
+        if (failure != null)
+            throw failure;
+        return changed;
+    }
+
+    // Decides the previous state and queues the event under the pair's lock, so concurrent requests for
+    // one pair see each other and reach the journal in the order pending reflects. The stored state read
+    // before the lock only holds while no flush has committed since; otherwise the pair is read again.
+    private boolean enqueue(LikeKey key, LikeEvent event, long generation, boolean stored) {
+        ReentrantLock lock = locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            Boolean previous = overlaid(key);
+            if (previous == null)
+                previous = generation == flushes.get() ? stored : isStored(key);
+            pending.put(key, event);
+            queue.add(event);
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Boolean overlaid(LikeKey key) {
+        LikeEvent event = pending.get(key);
+        return event != null ? Boolean.valueOf(event.like()) : inFlight.get(key);
+    }
+
+    private Set<LikeKey> storedKeys(List<LikeKey> keys) {
+        Set<LikeKey> stored = new HashSet<>();
+        for (int from = 0; from < keys.size(); from += LOOKUP_BATCH_SIZE) {
+            List<LikeKey> chunk = keys.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, keys.size()));
+            String sqlQuery = "select film_id, user_id from likes where (film_id, user_id) in (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")) + ")";
+            Object[] args = chunk.stream()
+                    .flatMap(key -> Stream.of(key.filmId(), key.userId()))
+                    .toArray();
+            jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet ->
+                    stored.add(new LikeKey(resultSet.getLong("film_id"), resultSet.getLong("user_id"))), args);
+        }
+        return stored;
+    }
+
+    private boolean isStored(LikeKey key) {
+        String sqlQuery = "select COUNT(*) from likes where film_id = ? and user_id = ?";
+        Integer count = jdbcTemplate.queryForObject(sqlQuery, Integer.class, key.filmId(), key.userId());
+        return count != null && count > 0;
+    }
+
+    private void writeLoop() {
+        List<LikeEvent> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                LikeEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_SYNC_BATCH - 1);
+                writeBatch(batch);
+                batch.forEach(event -> event.written().complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(event -> event.written().completeExceptionally(e));
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Like journal write failed: {}", e.getMessage());
+                batch.forEach(event -> event.written().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<LikeEvent> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (LikeEvent event : batch) {
+            lines.append(event.like() ? '+' : '-')
+                    .append(' ')
+                    .append(event.filmId())
+                    .append(' ')
+                    .append(event.userId())
+                    .append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (journalLock) {
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            segment.force(false);
+        }
+    }
+
+    private void apply(Map<LikeKey, Boolean> batch) {
+        List<Object[]> likes = new ArrayList<>();
+        List<Object[]> unlikes = new ArrayList<>();
+        batch.forEach((key, like) -> (like ? likes : unlikes).add(new Object[]{key.filmId(), key.userId()}));
+        String likeQuery = "merge into likes as l " +
+                "using (values (cast(? as integer), cast(? as integer))) as v(film_id, user_id) " +
+                "on l.film_id = v.film_id and l.user_id = v.user_id " +
+                "when not matched then insert (film_id, user_id) values (v.film_id, v.user_id)";
+        String unlikeQuery = "delete from likes where film_id = ? and user_id = ?";
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(unlikeQuery, unlikes);
+                jdbcTemplate.batchUpdate(likeQuery, likes);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Like batch rejected, applying events one by one: {}", e.getMessage());
+            unlikes.forEach(row -> jdbcTemplate.update(unlikeQuery, row));
+            for (Object[] row : likes) {
+                try {
+                    jdbcTemplate.update(likeQuery, row);
+                } catch (DataIntegrityViolationException rowError) {
+                    log.warn("Dropping like of film {} by user {}: {}", row[0], row[1], rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void replay(List<Path> segments) throws IOException {
+        Map<LikeKey, Boolean> events = new LinkedHashMap<>();
+        for (Path replayed : segments) {
+            for (String line : Files.readAllLines(replayed, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(" ");
+                if (parts.length != 3 || !(parts[0].equals("+") || parts[0].equals("-")))
+                    continue;
+                try {
+                    events.put(new LikeKey(Long.parseLong(parts[1]), Long.parseLong(parts[2])), parts[0].equals("+"));
+                } catch (NumberFormatException e) {
+                    log.warn("Skipping malformed like journal line in {}: {}", replayed, line);
+                }
+            }
+        }
+        if (!events.isEmpty()) {
+            apply(events);
+            log.info("Replayed {} like events from {} journal segments", events.size(), segments.size());
+        }
+        for (Path replayed : segments) {
+            Files.deleteIfExists(replayed);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentNumber++;
+        segmentPath = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+        segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    private record LikeEvent(boolean like, long filmId, long userId, CompletableFuture<Void> written) {
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Slf4j
+@Component
+@DependsOn("likeWriteBehind") // rebuild only after the like journal has been replayed
+@RequiredArgsConstructor
+public class PopularityLeaderboard {
+    private static final Comparator<Entry> RANKING = Comparator.comparingLong(Entry::likesCount)
+            .reversed()
+            .thenComparingLong(Entry::filmId);
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<Long, Long> likesCounts = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING);
+
+    @PostConstruct
+    public void rebuild() {
+        likesCounts.clear();
+        ranking.clear();
+        String sqlQuery = "select f.id, COUNT(l.user_id) as likes_count from films as f " +
+                "left join likes as l on l.film_id = f.id group by f.id";
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet ->
+                adjust(resultSet.getLong("id"), resultSet.getLong("likes_count")));
+        log.info("Popularity leaderboard rebuilt for {} films", likesCounts.size());
+    }
+
+    public void register(long filmId) {
+        adjust(filmId, 0);
+    }
+
+    public void unregister(long filmId) {
+        likesCounts.computeIfPresent(filmId, (id, likesCount) -> {
+            ranking.remove(new Entry(likesCount, id));
+            return null;
+        });
+    }
+
+    public void adjust(long filmId, long delta) {
+        likesCounts.compute(filmId, (id, likesCount) -> {
+            long oldCount = likesCount == null ? 0 : likesCount;
+            long newCount = Math.max(0, oldCount + delta);
+            ranking.add(new Entry(newCount, id));
+            if (likesCount != null && newCount != oldCount) {
+                ranking.remove(new Entry(oldCount, id));
+            }
+            return newCount;
+        });
+    }
+
+    public long getLikesCount(long filmId) {
+        return likesCounts.getOrDefault(filmId, 0L);
+    }
+
+    public List<Long> top(int max) {
+        Set<Long> filmIds = new LinkedHashSet<>();
+        for (Entry entry : ranking) {
+            if (filmIds.size() >= max) {
+                break;
+            }
+            filmIds.add(entry.filmId());
+        }
+        return new ArrayList<>(filmIds);
+    }
+
+    private record Entry(long likesCount, long filmId) {
+    }
+}
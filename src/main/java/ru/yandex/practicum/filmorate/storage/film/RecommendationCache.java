@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.GuardedCache;
+import ru.yandex.practicum.filmorate.storage.user.FriendshipGraph;
+
+import java.util.List;
+import java.util.function.LongFunction;
+
+@Component
+public class RecommendationCache {
+    private final FriendshipGraph friendshipGraph;
+    private final GuardedCache<List<Long>> recommendations;
+
+    public RecommendationCache(FriendshipGraph friendshipGraph, MeterRegistry meterRegistry,
+                               @Value("${filmorate.cache.recommendations.maximum-size:100000}") long maxUsers) {
+        this.friendshipGraph = friendshipGraph;
+        this.recommendations = new GuardedCache<>("recommendations", maxUsers, null, meterRegistry);
+    }
+
+    public List<Long> get(long userId, LongFunction<List<Long>> loader) {
+        return recommendations.get(userId, id -> List.copyOf(loader.apply(id)));
+    }
+
+    public void invalidateFriends(long userId) {
+        recommendations.invalidate(userId);
+    }
+
+    public void invalidateLikes(long userId) {
+        recommendations.invalidate(userId);
+        for (long followerId : friendshipGraph.getFollowers(userId)) {
+            recommendations.invalidate(followerId);
+        }
+    }
+
+    public void invalidateAll() {
+        recommendations.invalidateAll();
+    }
+}
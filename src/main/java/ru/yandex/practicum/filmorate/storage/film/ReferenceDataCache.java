@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of());
+
+    @PostConstruct
+    public void refresh() {
+        Map<Long, Genre> genres = new LinkedHashMap<>();
+        for (Genre genre : jdbcTemplate.query("select id, name from genres order by id", this::mapRowToGenre)) {
+            genres.put(genre.getId(), genre);
+        }
+        Map<Long, Rating> ratings = new LinkedHashMap<>();
+        for (Rating rating : jdbcTemplate.query("select id, name from ratings order by id", this::mapRowToRating)) {
+            ratings.put(rating.getId(), rating);
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(genres), Collections.unmodifiableMap(ratings));
+        log.info("Reference data loaded: {} genres, {} ratings", genres.size(), ratings.size());
+    }
+
+    public List<Genre> getGenres() {
+        return List.copyOf(snapshot.genres().values());
+    }
+
+    public Genre getGenre(long id) {
+        Genre genre = snapshot.genres().get(id);
+        if (genre == null)
+            throw new NotFoundException("no such genre id");
+        return genre;
+    }
+
+    public Genre findGenre(long id) {
+        return snapshot.genres().get(id);
+    }
+
+    public boolean hasGenre(long id) {
+        return snapshot.genres().containsKey(id);
+    }
+
+    public List<Rating> getRatings() {
+        return List.copyOf(snapshot.ratings().values());
+    }
+
+    public Rating getRating(long id) {
+        Rating rating = snapshot.ratings().get(id);
+        if (rating == null)
+            throw new NotFoundException("no such rating id");
+        return rating;
+    }
+
+    public Rating findRating(long id) {
+        return snapshot.ratings().get(id);
+    }
+
+    public boolean hasRating(long id) {
+        return snapshot.ratings().containsKey(id);
+    }
+
+    private Genre mapRowToGenre(ResultSet resultSet, int rowNum) throws SQLException {
+        return Genre.builder()
+                .id(resultSet.getLong("id"))
+                .name(resultSet.getString("name"))
+                .build();
+    }
+
+    private Rating mapRowToRating(ResultSet resultSet, int rowNum) throws SQLException {
+        return Rating.builder()
+                .id(resultSet.getLong("id"))
+                .name(resultSet.getString("name"))
+                .build();
+    }
+
+    private record Snapshot(Map<Long, Genre> genres, Map<Long, Rating> ratings) {
+    }
+}
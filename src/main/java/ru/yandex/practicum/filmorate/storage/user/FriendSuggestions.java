@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@RequiredArgsConstructor
+public class FriendSuggestions {
+    private static final int MAX_FAN_OUT = 5000;
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final long TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(40);
+    private final FriendshipGraph friendshipGraph;
+
+    public List<Long> suggest(long userId, int limit) {
+        long[] friends = friendshipGraph.getFriends(userId);
+        int fanOut = Math.min(friends.length, MAX_FAN_OUT);
+        ExpansionTask task = new ExpansionTask(userId, friends, 0, fanOut, System.nanoTime() + TIME_BUDGET_NANOS);
+        Map<Long, Integer> mutualCounts = fanOut > PARALLEL_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(task)
+                : task.invoke();
+        return mutualCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue()
+                        .reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private class ExpansionTask extends RecursiveTask<Map<Long, Integer>> {
+        private final long userId;
+        private final long[] friends;
+        private final int from;
+        private final int to;
+        private final long deadline;
+
+        ExpansionTask(long userId, long[] friends, int from, int to, long deadline) {
+            this.userId = userId;
+            this.friends = friends;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Map<Long, Integer> compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ExpansionTask left = new ExpansionTask(userId, friends, from, middle, deadline);
+                left.fork();
+                Map<Long, Integer> rightCounts = new ExpansionTask(userId, friends, middle, to, deadline).compute();
+                Map<Long, Integer> leftCounts = left.join();
+                Map<Long, Integer> larger = leftCounts.size() > rightCounts.size() ? leftCounts : rightCounts;
+                Map<Long, Integer> smaller = larger == leftCounts ? rightCounts : leftCounts;
+                smaller.forEach((candidate, count) -> larger.merge(candidate, count, Integer::sum));
+                return larger;
+            }
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = from; i < to && System.nanoTime() < deadline; i++) {
+                long[] candidates = friendshipGraph.getFriends(friends[i]);
+                int fanOut = Math.min(candidates.length, MAX_FAN_OUT);
+                for (int j = 0; j < fanOut; j++) {
+                    long candidate = candidates[j];
+                    if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                        counts.merge(candidate, 1, Integer::sum);
+                    }
+                }
+            }
+            return counts;
+        }
+    }
+}
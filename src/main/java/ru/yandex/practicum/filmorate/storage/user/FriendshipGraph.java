@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendshipGraph {
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final int GALLOP_RATIO = 16;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<Long, long[]> adjacency = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, long[]> followers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Integer> degrees = new HashMap<>();
+        jdbcTemplate.query("select user_id, COUNT(friend_id) as degree from friends group by user_id",
+                (RowCallbackHandler) resultSet -> degrees.put(resultSet.getLong("user_id"), resultSet.getInt("degree")));
+
+        int edges = degrees.values().stream().mapToInt(Integer::intValue).sum();
+        long[] targets = new long[edges];
+        Map<Long, Integer> offsets = new HashMap<>();
+        int offset = 0;
+        for (Map.Entry<Long, Integer> degree : degrees.entrySet()) {
+            offsets.put(degree.getKey(), offset);
+            offset += degree.getValue();
+        }
+        Map<Long, Integer> cursors = new HashMap<>(offsets);
+        jdbcTemplate.query("select user_id, friend_id from friends",
+                (RowCallbackHandler) resultSet -> {
+                    int cursor = cursors.merge(resultSet.getLong("user_id"), 1, Integer::sum) - 1;
+                    targets[cursor] = resultSet.getLong("friend_id");
+                });
+
+        adjacency.clear();
+        followers.clear();
+        for (Map.Entry<Long, Integer> degree : degrees.entrySet()) {
+            int from = offsets.get(degree.getKey());
+            long[] friends = Arrays.copyOfRange(targets, from, from + degree.getValue());
+            Arrays.sort(friends);
+            adjacency.put(degree.getKey(), distinct(friends));
+        }
+        Map<Long, Integer> inDegrees = new HashMap<>();
+        adjacency.forEach((userId, friends) -> {
+            for (long friendId : friends) {
+                inDegrees.merge(friendId, 1, Integer::sum);
+            }
+        });
+        Map<Long, long[]> reverse = new HashMap<>();
+        inDegrees.forEach((userId, inDegree) -> reverse.put(userId, new long[inDegree]));
+        Map<Long, Integer> reverseCursors = new HashMap<>();
+        adjacency.forEach((userId, friends) -> {
+            for (long friendId : friends) {
+                reverse.get(friendId)[reverseCursors.merge(friendId, 1, Integer::sum) - 1] = userId;
+            }
+        });
+        reverse.values().forEach(Arrays::sort);
+        followers.putAll(reverse);
+        log.info("Friendship graph rebuilt: {} users, {} edges", adjacency.size(), edges);
+    }
+
+    public long[] getFriends(long userId) {
+        return adjacency.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    public long[] getFollowers(long userId) {
+        return followers.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    public void addFriend(long userId, long friendId) {
+        adjacency.compute(userId, (id, friends) -> with(friends, friendId));
+        followers.compute(friendId, (id, ids) -> with(ids, userId));
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        adjacency.computeIfPresent(userId, (id, friends) -> without(friends, friendId));
+        followers.computeIfPresent(friendId, (id, ids) -> without(ids, userId));
+    }
+
+    public void removeUser(long userId) {
+        for (long followerId : getFollowers(userId)) {
+            removeFriend(followerId, userId);
+        }
+        for (long friendId : getFriends(userId)) {
+            removeFriend(userId, friendId);
+        }
+    }
+
+    public long[] getCommonFriends(long userId, long otherId) {
+        return intersection(getFriends(userId), getFriends(otherId));
+    }
+
+    static long[] intersection(long[] friends, long[] otherFriends) {
+        if (friends.length > otherFriends.length) {
+            long[] swap = friends;
+            friends = otherFriends;
+            otherFriends = swap;
+        }
+        if ((long) friends.length * GALLOP_RATIO < otherFriends.length)
+            return gallopingIntersection(friends, otherFriends);
+        return mergeIntersection(friends, otherFriends);
+    }
+
+    static long[] mergeIntersection(long[] small, long[] large) {
+        int count = 0;
+        for (int i = 0, j = 0; i < small.length && j < large.length; ) {
+            if (small[i] < large[j]) {
+                i++;
+            } else if (small[i] > large[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        long[] result = new long[count];
+        for (int i = 0, j = 0, k = 0; k < count; ) {
+            if (small[i] < large[j]) {
+                i++;
+            } else if (small[i] > large[j]) {
+                j++;
+            } else {
+                result[k++] = small[i];
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    static long[] gallopingIntersection(long[] small, long[] large) {
+        int count = 0;
+        int low = 0;
+        for (int i = 0; i < small.length && low < large.length; i++) {
+            int position = gallop(large, low, small[i]);
+            if (position >= 0) {
+                count++;
+                low = position + 1;
+            } else {
+                low = -position - 1;
+            }
+        }
+        long[] result = new long[count];
+        low = 0;
+        for (int i = 0, k = 0; k < count; i++) {
+            int position = gallop(large, low, small[i]);
+            if (position >= 0) {
+                result[k++] = small[i];
+                low = position + 1;
+            } else {
+                low = -position - 1;
+            }
+        }
+        return result;
+    }
+
+    private static int gallop(long[] values, int from, long key) {
+        int bound = 1;
+        while (from + bound < values.length && values[from + bound] < key) {
+            bound <<= 1;
+        }
+        return Arrays.binarySearch(values, from + (bound >> 1), Math.min(from + bound + 1, values.length), key);
+    }
+
+    static long[] with(long[] ids, long id) {
+        long[] current = ids == null ? NO_FRIENDS : ids;
+        int position = Arrays.binarySearch(current, id);
+        if (position >= 0)
+            return current;
+        int insertAt = -position - 1;
+        long[] updated = new long[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insertAt);
+        updated[insertAt] = id;
+        System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+        return updated;
+    }
+
+    static long[] without(long[] ids, long id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0)
+            return ids;
+        if (ids.length == 1)
+            return null;
+        long[] updated = new long[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, position);
+        System.arraycopy(ids, position + 1, updated, position, ids.length - position - 1);
+        return updated;
+    }
+
+    private static long[] distinct(long[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+}
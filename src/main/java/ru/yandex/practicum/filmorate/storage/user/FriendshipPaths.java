@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+@Component
+@RequiredArgsConstructor
+public class FriendshipPaths {
+    private static final int MAX_DEPTH = 6;
+    private static final long TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long NOT_FOUND = -1;
+    private final FriendshipGraph friendshipGraph;
+
+    public List<Long> findPath(long fromId, long toId) {
+        return findPath(fromId, toId, friendshipGraph::getFriends, friendshipGraph::getFollowers);
+    }
+
+    static List<Long> findPath(long fromId, long toId, LongFunction<long[]> friends, LongFunction<long[]> followers) {
+        if (fromId == toId)
+            return List.of(fromId);
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        Frontier forward = new Frontier(fromId);
+        Frontier backward = new Frontier(toId);
+        for (int depth = 0; depth < MAX_DEPTH && System.nanoTime() < deadline; depth++) {
+            boolean expandForward = forward.size <= backward.size;
+            long meeting = expandForward
+                    ? forward.expand(backward, friends, deadline)
+                    : backward.expand(forward, followers, deadline);
+            if (meeting != NOT_FOUND)
+                return joinPath(forward, backward, meeting);
+            if (forward.size == 0 || backward.size == 0)
+                break;
+        }
+        return List.of();
+    }
+
+    private static List<Long> joinPath(Frontier forward, Frontier backward, long meeting) {
+        List<Long> path = new ArrayList<>();
+        for (long id = meeting; id != NOT_FOUND; id = forward.parents.get(id)) {
+            path.add(id);
+        }
+        Collections.reverse(path);
+        for (long id = backward.parents.get(meeting); id != NOT_FOUND; id = backward.parents.get(id)) {
+            path.add(id);
+        }
+        return path;
+    }
+
+    private static final class Frontier {
+        private final BitSet visited = new BitSet();
+        private final Map<Long, Long> parents = new HashMap<>();
+        private long[] ids;
+        private int size;
+
+        Frontier(long start) {
+            ids = new long[]{start};
+            size = 1;
+            visited.set(Math.toIntExact(start));
+            parents.put(start, NOT_FOUND);
+        }
+
+        long expand(Frontier other, LongFunction<long[]> neighbours, long deadline) {
+            long[] next = new long[Math.max(16, size)];
+            int nextSize = 0;
+            for (int i = 0; i < size && System.nanoTime() < deadline; i++) {
+                long current = ids[i];
+                for (long neighbour : neighbours.apply(current)) {
+                    int index = Math.toIntExact(neighbour);
+                    if (visited.get(index))
+                        continue;
+                    visited.set(index);
+                    parents.put(neighbour, current);
+                    if (other.visited.get(index))
+                        return neighbour;
+                    if (nextSize == next.length)
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    next[nextSize++] = neighbour;
+                }
+            }
+            ids = next;
+            size = nextSize;
+            return NOT_FOUND;
+        }
+    }
+}
@@ -4,47 +4,84 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Component("InMemoryUserStorage")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+    private static final long[] NO_FRIENDS = new long[0];
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Long, long[]> friends = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final Object[] locks = IntStream.range(0, LOCK_STRIPES).mapToObj(i -> new Object()).toArray();
 
     @Override
     public User addUser(User user) {
         validateUser(user);
-        user.setId(getNextId());
+        user.setId(lastId.incrementAndGet());
+        user.setFriends(new FriendIds(NO_FRIENDS));
         users.put(user.getId(), user);
         log.info("User added: {}", user);
         return user;
     }
 
+    @Override
+    public List<Long> addUsers(List<User> users) {
+        users.forEach(this::validateUser);
+        return users.stream()
+                .map(this::addUser)
+                .map(User::getId)
+                .toList();
+    }
+
     @Override
     public User updateUser(User user) {
-        if (!users.containsKey(user.getId()))
-            throw new NotFoundException("Пользователь с id " + user.getId() + " не найден");
         validateUser(user);
-        users.put(user.getId(), user);
+        synchronized (lockFor(user.getId())) {
+            User current = getUserById(user.getId());
+            user.setFriends(current.getFriends());
+            users.put(user.getId(), user);
+        }
         log.info("User updated: {}", user);
         return user;
     }
 
     @Override
     public void deleteUser(User user) {
-        if (!users.containsKey(user.getId()))
-            throw new NotFoundException("Пользователь с id " + user.getId() + " не найден");
-        users.remove(user.getId());
+        long[] friendIds;
+        synchronized (lockFor(user.getId())) {
+            getUserById(user.getId());
+            users.remove(user.getId());
+            friendIds = friends.remove(user.getId());
+        }
+        if (friendIds != null) {
+            for (long friendId : friendIds) {
+                synchronized (lockFor(friendId)) {
+                    unlink(friendId, user.getId());
+                }
+            }
+        }
         log.info("User deleted: {}", user);
     }
 
     @Override
     public User getUserById(long id) {
-        if (users.containsKey(id))
-            return users.get(id);
+        User user = users.get(id);
+        if (user != null)
+            return user;
         throw new NotFoundException("Пользователь с id " + id + " не найден");
     }
 
@@ -54,58 +91,115 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public void addFriend(long userId, long friendId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendId);
-        Set<Long> friends1 = user.getFriends();
-        Set<Long> friends2 = friend.getFriends();
+    public List<User> getUsers(long after, int limit) {
+        return users.tailMap(after, false).values().stream()
+                .limit(limit)
+                .toList();
+    }
 
-        friends1.add(friendId);
-        friends2.add(userId);
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
 
-        user.setFriends(friends1);
-        friend.setFriends(friends2);
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        Set<Long> existingIds = new HashSet<>();
+        for (Long id : ids) {
+            if (users.containsKey(id))
+                existingIds.add(id);
+        }
+        return existingIds;
+    }
 
-        updateUser(user);
-        updateUser(friend);
-        log.info("User: {} and User: {} are now friends!", user.getId(), friend.getId());
+    @Override
+    public void addFriend(long userId, long friendId) {
+        withPairLocked(userId, friendId, () -> {
+            getUserById(userId);
+            getUserById(friendId);
+            link(userId, friendId);
+            link(friendId, userId);
+        });
+        log.info("User: {} and User: {} are now friends!", userId, friendId);
     }
 
     @Override
     public void removeFriend(long userId, long friendId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendId);
-
-        Set<Long> friends1 = user.getFriends();
-        Set<Long> friends2 = friend.getFriends();
+        withPairLocked(userId, friendId, () -> {
+            getUserById(userId);
+            getUserById(friendId);
+            unlink(userId, friendId);
+            unlink(friendId, userId);
+        });
+        log.info("User: {} and User: {} are not friends anymore", userId, friendId);
+    }
 
-        friends1.remove(friendId);
-        friends2.remove(userId);
+    @Override
+    public BatchResult addFriends(List<Friendship> friendships) {
+        BatchResult result = BatchResult.builder().build();
+        for (int i = 0; i < friendships.size(); i++) {
+            try {
+                addFriend(friendships.get(i).getUserId(), friendships.get(i).getFriendId());
+                result.setAccepted(result.getAccepted() + 1);
+            } catch (NotFoundException e) {
+                result.addFailure(i, e.getMessage());
+            }
+        }
+        return result;
+    }
 
-        user.setFriends(friends1);
-        friend.setFriends(friends2);
+    @Override
+    public List<User> getUserFriends(long id) {
+        getUserById(id);
+        return getExistingUsers(friendsOf(id), 0, Integer.MAX_VALUE);
+    }
 
-        updateUser(user);
-        updateUser(friend);
+    @Override
+    public List<User> getUserFriends(long id, long after, int limit) {
+        getUserById(id);
+        long[] friendIds = friendsOf(id);
+        int from = Arrays.binarySearch(friendIds, after);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return getExistingUsers(friendIds, from, limit);
+    }
 
-        log.info("User: {} and User: {} are not friends anymore", user.getId(), friend.getId());
+    @Override
+    public List<User> getCommonFriends(long id, long friendId) {
+        getUserById(id);
+        getUserById(friendId);
+        return getExistingUsers(FriendshipGraph.intersection(friendsOf(id), friendsOf(friendId)), 0,
+                Integer.MAX_VALUE);
     }
 
     @Override
-    public List<User> getUserFriends(long id) {
-        User user = getUserById(id);
-        return user.getFriends().stream()
-                .map(this::getUserById)
+    public List<User> getFriendSuggestions(long id, int limit) {
+        getUserById(id);
+        long[] friendIds = friendsOf(id);
+        Map<Long, Integer> mutualCounts = new HashMap<>();
+        for (long friendId : friendIds) {
+            for (long candidate : friendsOf(friendId)) {
+                if (candidate != id && Arrays.binarySearch(friendIds, candidate) < 0)
+                    mutualCounts.merge(candidate, 1, Integer::sum);
+            }
+        }
+        return mutualCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue()
+                        .reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> users.get(entry.getKey()))
+                .filter(Objects::nonNull)
                 .toList();
     }
 
     @Override
-    public List<User> getCommonFriends(long id, long friendId) {
-        User user1 = getUserById(id);
-        User user2 = getUserById(friendId);
-
-        return user1.getFriends().stream()
-                .filter(user2.getFriends()::contains)
+    public List<User> getFriendshipPath(long id, long otherId) {
+        getUserById(id);
+        getUserById(otherId);
+        List<Long> path = FriendshipPaths.findPath(id, otherId, this::friendsOf, this::friendsOf);
+        if (path.isEmpty())
+            throw new NotFoundException("Путь между пользователями " + id + " и " + otherId + " не найден");
+        return path.stream()
                 .map(this::getUserById)
                 .toList();
     }
@@ -128,12 +222,75 @@ public class InMemoryUserStorage implements UserStorage {
             throw new ValidationException("дата рождения пользователя не может быть в будущем");
     }
 
-    private long getNextId() {
-        long currentMaxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    private Object lockFor(long userId) {
+        return locks[(int) (userId & (LOCK_STRIPES - 1))];
+    }
+
+    private void withPairLocked(long userId, long otherId, Runnable action) {
+        int stripe = (int) (userId & (LOCK_STRIPES - 1));
+        int otherStripe = (int) (otherId & (LOCK_STRIPES - 1));
+        synchronized (locks[Math.min(stripe, otherStripe)]) {
+            synchronized (locks[Math.max(stripe, otherStripe)]) {
+                action.run();
+            }
+        }
+    }
+
+    private void link(long userId, long friendId) {
+        long[] updated = FriendshipGraph.with(friends.get(userId), friendId);
+        friends.put(userId, updated);
+        users.get(userId).setFriends(new FriendIds(updated));
+    }
+
+    private void unlink(long userId, long friendId) {
+        long[] current = friends.get(userId);
+        if (current == null)
+            return;
+        long[] updated = FriendshipGraph.without(current, friendId);
+        if (updated == null) {
+            friends.remove(userId);
+        } else {
+            friends.put(userId, updated);
+        }
+        User user = users.get(userId);
+        if (user != null)
+            user.setFriends(new FriendIds(updated == null ? NO_FRIENDS : updated));
+    }
+
+    private long[] friendsOf(long userId) {
+        return friends.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    private List<User> getExistingUsers(long[] ids, int from, int limit) {
+        List<User> result = new ArrayList<>(Math.min(ids.length - from, limit));
+        for (int i = from; i < ids.length && result.size() < limit; i++) {
+            User user = users.get(ids[i]);
+            if (user != null)
+                result.add(user);
+        }
+        return result;
+    }
+
+    private static final class FriendIds extends AbstractSet<Long> {
+        private final long[] ids;
+
+        FriendIds(long[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Long id && Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        @Override
+        public Iterator<Long> iterator() {
+            return Arrays.stream(ids).iterator();
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
     }
 }
@@ -3,48 +3,128 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBehind;
+import ru.yandex.practicum.filmorate.storage.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.film.RecommendationCache;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Primary
 @Slf4j
 @Component("UserDbStorage")
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final String USER_QUERY = "select u.id, u.email, u.login, u.name, u.birthday from users as u ";
+    private static final int BATCH_SIZE = 1000;
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final int WRITE_BATCH_SIZE = 5000;
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FriendshipGraph friendshipGraph;
+    private final FriendSuggestions friendSuggestions;
+    private final FriendshipPaths friendshipPaths;
+    private final RecommendationCache recommendationCache;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final CoLikeIndex coLikeIndex;
+    private final LikeWriteBehind likeWriteBehind;
+    private final EntityCache entityCache;
 
     private User mapRowToUser(ResultSet resultSet, int rowNum) throws SQLException {
-        long userId = resultSet.getLong("id");
         return User.builder()
-                .id(userId)
+                .id(resultSet.getLong("id"))
                 .email(resultSet.getString("email"))
                 .login(resultSet.getString("login"))
                 .name(resultSet.getString("name"))
                 .birthday(resultSet.getDate("birthday").toLocalDate())
-                .userFriends(getUserFriendsIds(userId))
+                .userFriends(new ArrayList<>())
                 .build();
     }
 
-    private List<Long> getUserFriendsIds(long userId) {
-        String sqlQuery = "select friend_id from friends where user_id = ?";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFriendId, userId);
+    private List<User> loadUsers(String sqlQuery, Object... args) {
+        List<User> users = jdbcTemplate.query(sqlQuery, this::mapRowToUser, args);
+        loadUserFriendsIds(users);
+        return users;
     }
 
-    private Long mapRowToFriendId(ResultSet resultSet, int rowNum) throws SQLException {
-        return resultSet.getLong("friend_id");
+    private void loadUserFriendsIds(List<User> users) {
+        List<Long> ids = users.stream()
+                .map(User::getId)
+                .distinct()
+                .toList();
+        Map<Long, List<Long>> friendsIds = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            String sqlQuery = "select user_id, friend_id from friends " +
+                    "where user_id in (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> friendsIds
+                    .computeIfAbsent(resultSet.getLong("user_id"), userId -> new ArrayList<>())
+                    .add(resultSet.getLong("friend_id")), chunk.toArray());
+        }
+        for (User user : users) {
+            user.setUserFriends(friendsIds.getOrDefault(user.getId(), new ArrayList<>()));
+        }
+    }
+
+    private List<User> getUsersByIds(long[] ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+            Object[] chunk = Arrays.stream(ids, from, Math.min(from + BATCH_SIZE, ids.length))
+                    .boxed()
+                    .toArray();
+            String sqlQuery = USER_QUERY + "where u.id in (" +
+                    String.join(", ", Collections.nCopies(chunk.length, "?")) + ") order by u.id";
+            users.addAll(jdbcTemplate.query(sqlQuery, this::mapRowToUser, chunk));
+        }
+        loadUserFriendsIds(users);
+        return users;
+    }
+
+    private List<User> getUsersInOrder(List<Long> ids) {
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : getUsersByIds(ids.stream().mapToLong(Long::longValue).sorted().toArray())) {
+            usersById.put(user.getId(), user);
+        }
+        return ids.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void checkUserExists(long id) {
+        String sqlQuery = "select COUNT(id) from users where id = ?";
+        Integer count = jdbcTemplate.queryForObject(sqlQuery, Integer.class, id);
+        if (count == null || count == 0)
+            throw new NotFoundException("User with id " + id + " not found");
     }
 
     @Override
@@ -57,10 +137,46 @@ public class UserDbStorage implements UserStorage {
         return getUserById(userId);
     }
 
+    @Override
+    public List<Long> addUsers(List<User> users) {
+        users.forEach(this::validateUser);
+        List<Long> userIds = new ArrayList<>(users.size());
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<User> chunk = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+            userIds.addAll(transactionTemplate.execute(status -> insertUsers(chunk)));
+        }
+        return userIds;
+    }
+
+    private List<Long> insertUsers(List<User> users) {
+        String sqlQuery = "insert into users (email, login, name, birthday) " +
+                "values (?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sqlQuery, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        User user = users.get(i);
+                        statement.setString(1, user.getEmail());
+                        statement.setString(2, user.getLogin());
+                        statement.setString(3, user.getName());
+                        statement.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+        return keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.values().iterator().next()).longValue())
+                .toList();
+    }
+
     @Override
     public User updateUser(User user) {
         validateUser(user);
-        User existingUser = getUserById(user.getId());
+        checkUserExists(user.getId());
         String sqlQuery = "update users set " +
                 "name = ?, email = ?, login = ?, birthday = ? " +
                 "where id = ?";
@@ -69,86 +185,195 @@ public class UserDbStorage implements UserStorage {
                 user.getEmail(),
                 user.getLogin(),
                 user.getBirthday(),
-                existingUser.getId());
+                user.getId());
+        entityCache.invalidateUser(user.getId());
         return getUserById(user.getId());
     }
 
     @Override
     public void deleteUser(User user) {
-        User existingUser = getUserById(user.getId());
+        checkUserExists(user.getId());
+        List<Long> likedFilmIds = new ArrayList<>(likeWriteBehind.likedFilmIds(user.getId(),
+                jdbcTemplate.queryForList("select film_id from likes where user_id = ?", Long.class, user.getId())));
         String sqlQuery = "delete from users where id = ?";
         jdbcTemplate.update(sqlQuery, user.getId());
+        entityCache.invalidateUser(user.getId());
+        entityCache.invalidateUsers(friendshipGraph.getFollowers(user.getId()));
+        entityCache.invalidateFilms(likedFilmIds);
+        for (int i = 0; i < likedFilmIds.size(); i++) {
+            popularityLeaderboard.adjust(likedFilmIds.get(i), -1);
+            coLikeIndex.onUnlike(likedFilmIds.get(i), likedFilmIds.subList(i + 1, likedFilmIds.size()));
+        }
+        recommendationCache.invalidateLikes(user.getId());
+        friendshipGraph.removeUser(user.getId());
     }
 
     @Override
     public User getUserById(long id) {
-        try {
-            String sqlQuery = "select id, email, login, name, birthday from users where id = ?";
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToUser, id);
-        } catch (EmptyResultDataAccessException e) {
+        return entityCache.getUser(id, this::loadUserById);
+    }
+
+    private User loadUserById(long id) {
+        List<User> users = loadUsers(USER_QUERY + "where u.id = ?", id);
+        if (users.isEmpty())
             throw new NotFoundException("User with id " + id + " not found");
-        }
+        return users.getFirst();
     }
 
     @Override
     public List<User> getUsers() {
-        String sqlQuery = "select id, email, login, name, birthday from users";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToUser);
+        return loadUsers(USER_QUERY + "order by u.id");
+    }
+
+    @Override
+    public List<User> getUsers(long after, int limit) {
+        return loadUsers(USER_QUERY + "where u.id > ? order by u.id limit ?", after, limit);
+    }
+
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        long after = 0;
+        List<User> page;
+        do {
+            page = jdbcTemplate.query(UserExport.PAGE, (resultSet, rowNum) -> UserExport.mapRow(resultSet::getObject),
+                    after, EXPORT_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty())
+                after = page.getLast().getId();
+        } while (page.size() == EXPORT_PAGE_SIZE);
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream()
+                .distinct()
+                .toList();
+        Set<Long> existingIds = new HashSet<>();
+        for (int from = 0; from < distinctIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + BATCH_SIZE, distinctIds.size()));
+            String sqlQuery = "select id from users " +
+                    "where id in (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            existingIds.addAll(jdbcTemplate.queryForList(sqlQuery, Long.class, chunk.toArray()));
+        }
+        return existingIds;
     }
 
     @Override
     public void addFriend(long userId, long friendId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendId);
-        String sqlQuery = "insert into friends (user_id, friend_id, status_id) " +
-                "values (?, ?, ?)";
+        checkUserExists(userId);
+        checkUserExists(friendId);
+        String sqlQuery = "merge into friends as f " +
+                "using (values (cast(? as integer), cast(? as integer), cast(? as integer))) as v(user_id, friend_id, status_id) " +
+                "on f.user_id = v.user_id and f.friend_id = v.friend_id " +
+                "when not matched then insert (user_id, friend_id, status_id) " +
+                "values (v.user_id, v.friend_id, v.status_id)";
         jdbcTemplate.update(sqlQuery,
-                user.getId(),
-                friend.getId(),
+                userId,
+                friendId,
                 2);
-        log.info("User: {} and User: {} are now friends!", user.getId(), friend.getId());
+        entityCache.invalidateUser(userId);
+        friendshipGraph.addFriend(userId, friendId);
+        recommendationCache.invalidateFriends(userId);
+        log.info("User: {} and User: {} are now friends!", userId, friendId);
     }
 
     @Override
     public void removeFriend(long userId, long friendId) {
-        User user = getUserById(userId);
-        User friend = getUserById(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
         String sqlQuery = "delete from friends where user_id = ? and friend_id = ?";
-        jdbcTemplate.update(sqlQuery, user.getId(), friend.getId());
+        jdbcTemplate.update(sqlQuery, userId, friendId);
+        entityCache.invalidateUser(userId);
+        friendshipGraph.removeFriend(userId, friendId);
+        recommendationCache.invalidateFriends(userId);
 
-        log.info("User: {} and User: {} are not friends anymore", user.getId(), friend.getId());
+        log.info("User: {} and User: {} are not friends anymore", userId, friendId);
     }
 
     @Override
-    public List<User> getUserFriends(long id) {
-        User user = getUserById(id);
-        List<User> friends = new ArrayList<>();
-        for (Long userId : user.getUserFriends()) {
-            friends.add(getUserById(userId));
+    public BatchResult addFriends(List<Friendship> friendships) {
+        Set<Long> userIds = new HashSet<>();
+        for (Friendship friendship : friendships) {
+            userIds.add(friendship.getUserId());
+            userIds.add(friendship.getFriendId());
         }
-        return friends;
+        Set<Long> existingIds = getExistingUserIds(userIds);
+
+        BatchResult result = BatchResult.builder().build();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            if (!existingIds.contains(friendship.getUserId())) {
+                result.addFailure(i, "User with id " + friendship.getUserId() + " not found");
+            } else if (!existingIds.contains(friendship.getFriendId())) {
+                result.addFailure(i, "User with id " + friendship.getFriendId() + " not found");
+            } else {
+                rows.add(new Object[]{friendship.getUserId(), friendship.getFriendId(), 2});
+            }
+        }
+
+        String sqlQuery = "merge into friends as f " +
+                "using (values (cast(? as integer), cast(? as integer), cast(? as integer))) as v(user_id, friend_id, status_id) " +
+                "on f.user_id = v.user_id and f.friend_id = v.friend_id " +
+                "when not matched then insert (user_id, friend_id, status_id) " +
+                "values (v.user_id, v.friend_id, v.status_id)";
+        for (int from = 0; from < rows.size(); from += WRITE_BATCH_SIZE) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + WRITE_BATCH_SIZE, rows.size()));
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sqlQuery, chunk));
+            for (Object[] row : chunk) {
+                entityCache.invalidateUser((Long) row[0]);
+                friendshipGraph.addFriend((Long) row[0], (Long) row[1]);
+                recommendationCache.invalidateFriends((Long) row[0]);
+            }
+        }
+        result.setAccepted(rows.size());
+        log.info("Friendships batch: {} added, {} rejected", rows.size(), result.getFailures().size());
+        return result;
+    }
+
+    @Override
+    public List<User> getUserFriends(long id) {
+        checkUserExists(id);
+        return loadUsers(USER_QUERY + "join friends as f on f.friend_id = u.id " +
+                "where f.user_id = ? order by u.id", id);
+    }
+
+    @Override
+    public List<User> getUserFriends(long id, long after, int limit) {
+        checkUserExists(id);
+        return loadUsers(USER_QUERY + "join friends as f on f.friend_id = u.id " +
+                "where f.user_id = ? and u.id > ? order by u.id limit ?", id, after, limit);
     }
 
     @Override
     public List<User> getCommonFriends(long id, long friendId) {
-        User user1 = getUserById(id);
-        User user2 = getUserById(friendId);
-
-        List<User> commonFriends = new ArrayList<>();
-        Set<Long> commonSet = new HashSet<>(user1.getUserFriends());
-        commonSet.retainAll(user2.getUserFriends());
-        for (Long commonFriend : commonSet) {
-            commonFriends.add(getUserById(commonFriend));
-        }
-        return commonFriends;
+        checkUserExists(id);
+        checkUserExists(friendId);
+        return getUsersByIds(friendshipGraph.getCommonFriends(id, friendId));
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(long id, int limit) {
+        checkUserExists(id);
+        return getUsersInOrder(friendSuggestions.suggest(id, limit));
+    }
+
+    @Override
+    public List<User> getFriendshipPath(long id, long otherId) {
+        checkUserExists(id);
+        checkUserExists(otherId);
+        List<Long> path = friendshipPaths.findPath(id, otherId);
+        if (path.isEmpty())
+            throw new NotFoundException("Path between users " + id + " and " + otherId + " not found");
+        return getUsersInOrder(path);
     }
 
     @Override
     public void confirmFriends(long id) {
-        User user = getUserById(id);
+        checkUserExists(id);
         String sqlQuery = "update friends set status_id = 1 where friend_id = ?";
-        jdbcTemplate.update(sqlQuery, user.getId());
+        jdbcTemplate.update(sqlQuery, id);
         log.info("All friend requests now have status confirmed for friend_id: {}", id);
     }
 
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ExportRow;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+final class UserExport {
+    private static final String SELECT = "select u.id, u.email, u.login, u.name, u.birthday, " +
+            "(select LISTAGG(f.friend_id, ',') WITHIN GROUP (ORDER BY f.friend_id) " +
+            "from friends as f where f.user_id = u.id) as friend_ids " +
+            "from users as u ";
+    static final String ALL = SELECT + "order by u.id";
+    static final String PAGE = SELECT + "where u.id > ? order by u.id limit ?";
+
+    private UserExport() {
+    }
+
+    static <E extends Exception> User mapRow(ExportRow<E> row) throws E {
+        User user = User.builder()
+                .id(row.get("id", Integer.class))
+                .email(row.get("email", String.class))
+                .login(row.get("login", String.class))
+                .name(row.get("name", String.class))
+                .birthday(row.get("birthday", LocalDate.class))
+                .userFriends(new ArrayList<>())
+                .build();
+        String friendIds = row.get("friend_ids", String.class);
+        if (friendIds != null) {
+            for (String friendId : friendIds.split(",")) {
+                user.getUserFriends().add(Long.parseLong(friendId));
+            }
+        }
+        return user;
+    }
+}
@@ -1,12 +1,19 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User addUser(User user);
 
+    List<Long> addUsers(List<User> users);
+
     User updateUser(User user);
 
     void deleteUser(User user);
@@ -15,13 +22,27 @@ public interface UserStorage {
 
     List<User> getUsers();
 
+    List<User> getUsers(long after, int limit);
+
+    Set<Long> getExistingUserIds(Collection<Long> ids);
+
+    void exportUsers(Consumer<User> consumer);
+
     void addFriend(long userId, long friendId);
 
     void removeFriend(long userId, long friendId);
 
+    BatchResult addFriends(List<Friendship> friendships);
+
     List<User> getUserFriends(long id);
 
+    List<User> getUserFriends(long id, long after, int limit);
+
     List<User> getCommonFriends(long id, long friendId);
 
+    List<User> getFriendSuggestions(long id, int limit);
+
+    List<User> getFriendshipPath(long id, long otherId);
+
     void confirmFriends(long id);
 }
@@ -0,0 +1,36 @@
+DELETE FROM `likes` WHERE film_id IS NULL OR user_id IS NULL;
+
+DELETE FROM `likes` WHERE _ROWID_ NOT IN (
+    SELECT MIN(_ROWID_) FROM `likes` GROUP BY film_id, user_id
+);
+
+ALTER TABLE `likes` ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE `likes` ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE `likes` ADD CONSTRAINT pk_likes PRIMARY KEY (film_id, user_id);
+CREATE INDEX idx_likes_user_id ON `likes` (user_id, film_id);
+
+DELETE FROM `friends` WHERE user_id IS NULL OR friend_id IS NULL;
+
+DELETE FROM `friends` AS f WHERE EXISTS (
+    SELECT 1 FROM `friends` AS c
+    WHERE c.user_id = f.user_id AND c.friend_id = f.friend_id AND c.status_id < f.status_id
+);
+
+DELETE FROM `friends` WHERE _ROWID_ NOT IN (
+    SELECT MIN(_ROWID_) FROM `friends` GROUP BY user_id, friend_id
+);
+
+ALTER TABLE `friends` ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE `friends` ALTER COLUMN friend_id SET NOT NULL;
+ALTER TABLE `friends` ADD CONSTRAINT pk_friends PRIMARY KEY (user_id, friend_id);
+CREATE INDEX idx_friends_friend_id ON `friends` (friend_id, user_id);
+
+DELETE FROM `film_genres` WHERE film_id IS NULL OR genre_id IS NULL;
+
+DELETE FROM `film_genres` WHERE _ROWID_ NOT IN (
+    SELECT MIN(_ROWID_) FROM `film_genres` GROUP BY film_id, genre_id
+);
+
+ALTER TABLE `film_genres` ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE `film_genres` ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE `film_genres` ADD CONSTRAINT pk_film_genres PRIMARY KEY (film_id, genre_id);
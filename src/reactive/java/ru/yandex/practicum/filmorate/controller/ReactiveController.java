@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.ReactiveFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.ReactiveUserStorage;
+
+@RestController
+@RequestMapping("/reactive")
+@RequiredArgsConstructor
+public class ReactiveController {
+    private final ReactiveFilmStorage filmStorage;
+    private final ReactiveUserStorage userStorage;
+
+    @GetMapping(value = "/films", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Film> getFilms() {
+        return filmStorage.getFilms();
+    }
+
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> getUsers() {
+        return userStorage.getUsers();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+@Configuration
+public class ReactiveStorageConfiguration {
+    private static final String H2_PREFIX = "jdbc:h2:";
+
+    // Opens the same H2 database as the JDBC DataSource, so both stacks see one set of tables. The factory is not
+    // a bean: Boot would then skip the JDBC DataSource the rest of the application runs on.
+    @Bean
+    public DatabaseClient databaseClient(@Value("${spring.datasource.url}") String url,
+                                         @Value("${spring.datasource.username:sa}") String username,
+                                         @Value("${spring.datasource.password:}") String password) {
+        if (!url.startsWith(H2_PREFIX))
+            throw new IllegalStateException("Reactive storage supports only H2, got " + url);
+        return DatabaseClient.create(new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(url.substring(H2_PREFIX.length()))
+                .username(username)
+                .password(password)
+                .build()));
+    }
+}
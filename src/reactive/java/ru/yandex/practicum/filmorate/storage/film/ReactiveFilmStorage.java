@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import ru.yandex.practicum.filmorate.model.Film;
+
+@Component
+@RequiredArgsConstructor
+public class ReactiveFilmStorage {
+    private final DatabaseClient databaseClient;
+    private final ReferenceDataCache referenceDataCache;
+
+    public Flux<Film> getFilms() {
+        return databaseClient.sql(FilmExport.ALL)
+                .map(row -> FilmExport.mapRow(row::get, referenceDataCache))
+                .all();
+    }
+}
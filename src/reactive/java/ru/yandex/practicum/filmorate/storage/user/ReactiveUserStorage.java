@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import ru.yandex.practicum.filmorate.model.User;
+
+@Component
+@RequiredArgsConstructor
+public class ReactiveUserStorage {
+    private final DatabaseClient databaseClient;
+
+    public Flux<User> getUsers() {
+        return databaseClient.sql(UserExport.ALL)
+                .map(row -> UserExport.mapRow(row::get))
+                .all();
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "filmorate.jdbc.bulkhead.enabled=true",
+        "filmorate.jdbc.bulkhead.max-concurrent=2",
+        "filmorate.jdbc.bulkhead.max-wait-ms=100"
+})
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class BulkheadTests {
+    private final MockMvc mockMvc;
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    public void rejectWhenFullTest() throws Exception {
+        double rejected = meterRegistry.get("filmorate.jdbc.bulkhead.rejected").counter().count();
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            assertEquals(2, meterRegistry.get("filmorate.jdbc.bulkhead.active").gauge().value(),
+                    "занятые соединения не учтены");
+            mockMvc.perform(get("/films"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.error").value("Сервис перегружен"));
+        }
+        assertEquals(rejected + 1, meterRegistry.get("filmorate.jdbc.bulkhead.rejected").counter().count(),
+                "отказ не попал в метрику");
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk());
+    }
+}
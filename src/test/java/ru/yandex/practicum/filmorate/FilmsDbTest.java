@@ -1,34 +1,65 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.JdbcStatementCounter;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.RecommendationCache;
+import ru.yandex.practicum.filmorate.storage.film.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.ExportRequests.exportLines;
+import static ru.yandex.practicum.filmorate.TestData.film;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
+@AutoConfigureMockMvc
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class FilmsDbTest {
     private final FilmDbStorage filmDbStorage;
     private final UserDbStorage userDbStorage;
     private final FilmService service;
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceDataCache;
+    private final JdbcStatementCounter jdbcStatementCounter;
+    private final EntityCache entityCache;
+    private final RecommendationCache recommendationCache;
     Film testFilm;
     User user;
 
@@ -119,4 +150,309 @@ public class FilmsDbTest {
         assertEquals(0, filmDbStorage.getFilmById(testFilm.getId()).getLikesCount(),
                 "не анлайкнулось");
     }
+
+    @Test
+    public void getPopularFilmsTest() {
+        Film testFilm1 = Film.builder()
+                .name("Зеленый слоник")
+                .description("о господи")
+                .releaseDate(LocalDate.of(2010, 7, 16))
+                .duration(148)
+                .mpa(Rating.builder()
+                        .id(1)
+                        .build())
+                .genres(new ArrayList<>())
+                .build();
+        long popularId = filmDbStorage.addFilm(testFilm1).getId();
+        service.addLike(popularId, user.getId());
+
+        List<Film> popular = filmDbStorage.getPopularFilms(10);
+        assertEquals(2, popular.size(), "в топе должны быть все фильмы");
+        assertEquals(popularId, popular.getFirst().getId(), "фильм с лайком должен быть первым");
+        assertEquals(1, filmDbStorage.getPopularFilms(1).size(), "топ не ограничился count");
+    }
+
+    @Test
+    public void addFilmsTest() {
+        Film testFilm1 = Film.builder()
+                .name("Зеленый слоник")
+                .description("о господи")
+                .releaseDate(LocalDate.of(2010, 7, 16))
+                .duration(148)
+                .mpa(Rating.builder()
+                        .id(1)
+                        .build())
+                .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(2).build()))
+                .build();
+
+        List<Long> ids = filmDbStorage.addFilms(List.of(testFilm1, testFilm));
+
+        assertEquals(2, ids.size(), "вернулись не все id");
+        assertEquals(3, filmDbStorage.getFilms().size(), "фильмы не добавились пачкой");
+        assertEquals(1, filmDbStorage.getFilmById(ids.getFirst()).getGenres().size(),
+                "дубли жанров не схлопнулись");
+    }
+
+    @Test
+    public void cachedFilmTest() {
+        Film cached = filmDbStorage.getFilmById(testFilm.getId());
+        cached.setLikesCount(100L);
+        cached.getGenres().add(Genre.builder().id(1).build());
+        assertEquals(0, filmDbStorage.getFilmById(testFilm.getId()).getLikesCount(),
+                "кэш отдал изменённую копию");
+        assertEquals(0, filmDbStorage.getFilmById(testFilm.getId()).getGenres().size(),
+                "кэш отдал изменённую копию");
+
+        filmDbStorage.addLikes(List.of(new FilmLike(testFilm.getId(), user.getId())));
+
+        assertEquals(1, filmDbStorage.getFilmById(testFilm.getId()).getLikesCount(),
+                "кэш не сбросился после пачки лайков");
+    }
+
+    @Test
+    public void staleLoadNotCachedTest() {
+        long id = testFilm.getId();
+        Film stale = filmDbStorage.getFilmById(id);
+        stale.setName("Устаревший");
+        entityCache.invalidateFilm(id);
+        entityCache.getFilm(id, filmId -> {
+            entityCache.invalidateFilm(filmId);
+            return stale;
+        });
+
+        assertEquals(testFilm.getName(), filmDbStorage.getFilmById(id).getName(),
+                "значение, прочитанное до сброса кэша, попало в кэш");
+    }
+
+    @Test
+    public void addLikesBatchTest() throws Exception {
+        long filmId = filmDbStorage.addFilm(film("Второй")).getId();
+        long userId = user.getId();
+        mockMvc.perform(post("/films/likes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(
+                                new FilmLike(filmId, userId),
+                                new FilmLike(999, userId),
+                                new FilmLike(filmId, 999),
+                                new FilmLike(filmId, userId)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.failures.length()").value(2))
+                .andExpect(jsonPath("$.failures[0].index").value(1))
+                .andExpect(jsonPath("$.failures[0].error").value("Film with id 999 not found"))
+                .andExpect(jsonPath("$.failures[1].index").value(2))
+                .andExpect(jsonPath("$.failures[1].error").value("User with id 999 not found"));
+
+        assertEquals(1, filmDbStorage.getFilmById(filmId).getLikesCount(), "повтор лайка в пачке посчитался дважды");
+        assertEquals(1, jdbcTemplate.queryForObject("select COUNT(*) from likes", Integer.class),
+                "в базу попали лишние лайки");
+        assertEquals(List.of(filmId, testFilm.getId()), popularIds(), "лайк из пачки не попал в топ");
+    }
+
+    @Test
+    public void deleteUserLikesTest() {
+        long first = testFilm.getId();
+        long second = filmDbStorage.addFilm(film("Второй")).getId();
+        long third = filmDbStorage.addFilm(film("Третий")).getId();
+        User deleted = userDbStorage.addUser(user.toBuilder().id(0).build());
+        User other = userDbStorage.addUser(user.toBuilder().id(0).build());
+        service.addLike(first, user.getId());
+        service.addLike(second, deleted.getId());
+        service.addLike(third, deleted.getId());
+        service.addLike(second, other.getId());
+        assertEquals(List.of(second, first, third), popularIds(), "неверный топ до удаления");
+        assertEquals(List.of(third), ids(filmDbStorage.getSimilarFilms(second, 10)), "неверные похожие фильмы");
+
+        userDbStorage.deleteUser(deleted);
+
+        List<Long> byCount = jdbcTemplate.queryForList("select f.id from films as f " +
+                "left join likes as l on l.film_id = f.id group by f.id order by COUNT(l.user_id) desc, f.id", Long.class);
+        assertEquals(byCount, popularIds(), "топ не совпадает с лайками в базе после удаления пользователя");
+        assertEquals(List.of(first, second, third), popularIds(), "лайки удалённого пользователя остались в топе");
+        assertTrue(filmDbStorage.getSimilarFilms(second, 10).isEmpty(),
+                "совместные лайки удалённого пользователя остались в похожих");
+    }
+
+    @Test
+    public void repeatedLikeTest() throws Exception {
+        long first = testFilm.getId();
+        long second = filmDbStorage.addFilm(film("Второй")).getId();
+        long third = filmDbStorage.addFilm(film("Третий")).getId();
+        long me = user.getId();
+        long friend = userDbStorage.addUser(user.toBuilder().id(0).build()).getId();
+        long other = userDbStorage.addUser(user.toBuilder().id(0).build()).getId();
+        like(first, me);
+        like(second, me);
+        like(second, me);
+        for (long userId : List.of(friend, other)) {
+            like(first, userId);
+            like(third, userId);
+        }
+
+        assertEquals(1, jdbcTemplate.queryForObject("select COUNT(*) from likes where film_id = ? and user_id = ?",
+                Integer.class, second, me), "повторный лайк создал дубль");
+        assertEquals(List.of(first, third, second), popularIds(), "повторный лайк учтён в топе");
+        assertEquals(List.of(third, second), ids(filmDbStorage.getSimilarFilms(first, 10)),
+                "повторный лайк учтён в похожих фильмах");
+    }
+
+    @Test
+    public void popularByGenreRatingAndYearTest() throws Exception {
+        long comedy = filmDbStorage.addFilm(film("Комедия", 1)).getId();
+        long drama = filmDbStorage.addFilm(film("Драма", 2)).getId();
+        long oldComedy = filmDbStorage.addFilm(film("Старая комедия", 1).toBuilder()
+                .releaseDate(LocalDate.of(1999, 1, 1))
+                .build()).getId();
+        like(oldComedy, user.getId());
+
+        mockMvc.perform(get("/films/popular").param("genreId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains((int) oldComedy, (int) comedy)));
+        mockMvc.perform(get("/films/popular").param("genreId", "1").param("year", "2010"))
+                .andExpect(jsonPath("$[*].id", contains((int) comedy)));
+        mockMvc.perform(get("/films/popular").param("mpaId", "1").param("year", "2010").param("count", "2"))
+                .andExpect(jsonPath("$[*].id", contains((int) testFilm.getId(), (int) comedy)));
+        mockMvc.perform(get("/films/popular").param("genreId", "2").param("mpaId", "2"))
+                .andExpect(jsonPath("$").isEmpty());
+        assertEquals(List.of(drama), ids(filmDbStorage.getPopularFilms(10, 2L, 1L, 2010)));
+    }
+
+    private void like(long filmId, long userId) throws Exception {
+        mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userId))
+                .andExpect(status().isOk());
+    }
+
+    private List<Long> popularIds() {
+        return ids(filmDbStorage.getPopularFilms(10));
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream()
+                .map(Film::getId)
+                .toList();
+    }
+
+    @Test
+    public void similarFilmsCountTest() throws Exception {
+        for (String count : List.of("0", "-1", "1001")) {
+            mockMvc.perform(get("/films/{id}/similar", testFilm.getId()).param("count", count))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/films/{id}/similar", testFilm.getId())
+                            .param("count", count)
+                            .param("mode", "content"))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(get("/films/{id}/similar", testFilm.getId()).param("count", "1"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void recommendationsTest() throws Exception {
+        long first = testFilm.getId();
+        long second = filmDbStorage.addFilm(film("Второй")).getId();
+        long third = filmDbStorage.addFilm(film("Третий")).getId();
+        long me = user.getId();
+        long friend = userDbStorage.addUser(user.toBuilder().id(0).build()).getId();
+        long other = userDbStorage.addUser(user.toBuilder().id(0).build()).getId();
+        userDbStorage.addFriend(me, friend);
+        service.addLike(second, friend);
+        service.addLike(third, friend);
+        service.addLike(third, other);
+        assertEquals(List.of(second, third), ids(service.getRecommendations(me, 10)),
+                "рекомендуются фильмы друзей по числу лайков, при равенстве по id");
+
+        userDbStorage.addFriend(me, other);
+        assertEquals(List.of(third, second), ids(service.getRecommendations(me, 10)),
+                "кэш рекомендаций не сбросился после новой дружбы");
+
+        service.addLike(third, me);
+        assertEquals(List.of(second), ids(service.getRecommendations(me, 10)),
+                "свой лайк не убрал фильм из рекомендаций");
+
+        service.addLike(first, friend);
+        assertEquals(List.of(first, second), ids(service.getRecommendations(me, 10)),
+                "кэш рекомендаций не сбросился после лайка друга");
+        assertEquals(List.of(first), ids(service.getRecommendations(me, 1)), "count не ограничил выдачу");
+
+        userDbStorage.removeFriend(me, friend);
+        assertTrue(service.getRecommendations(me, 10).isEmpty(),
+                "кэш рекомендаций не сбросился после удаления друга");
+
+        mockMvc.perform(get("/users/{id}/recommendations", me).param("count", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/{id}/recommendations", me).param("count", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void staleRecommendationsNotCachedTest() {
+        long me = user.getId();
+        long friend = userDbStorage.addUser(user.toBuilder().id(0).build()).getId();
+        userDbStorage.addFriend(me, friend);
+        recommendationCache.get(me, userId -> {
+            service.addLike(testFilm.getId(), friend);
+            return List.of();
+        });
+
+        assertEquals(List.of(testFilm.getId()), ids(service.getRecommendations(me, 10)),
+                "рекомендации, посчитанные до лайка друга, попали в кэш");
+    }
+
+    @Test
+    public void contentSimilarFilmsTest() {
+        long target = filmDbStorage.addFilm(film("Цель", 1, 2)).getId();
+        long same = filmDbStorage.addFilm(film("Те же жанры", 1, 2)).getId();
+        Film firstHalf = filmDbStorage.addFilm(film("Первый жанр", 1));
+        long secondHalf = filmDbStorage.addFilm(film("Второй жанр", 2)).getId();
+        long other = filmDbStorage.addFilm(film("Другой жанр", 3)).getId();
+
+        assertEquals(List.of(same, firstHalf.getId(), secondHalf, testFilm.getId(), other),
+                ids(service.getSimilarFilms(target, 10, "content")),
+                "фильмы должны идти по пересечению жанров, при равенстве по id");
+        assertEquals(List.of(same, firstHalf.getId()), ids(service.getSimilarFilms(target, 2, "content")),
+                "count не ограничил выдачу");
+
+        firstHalf.setMpa(Rating.builder().id(2).build());
+        filmDbStorage.updateFilm(firstHalf);
+        assertEquals(List.of(same, secondHalf, firstHalf.getId()),
+                ids(service.getSimilarFilms(target, 3, "content")), "индекс не увидел новый рейтинг фильма");
+    }
+
+    @Test
+    public void exportFilmsTest() throws Exception {
+        filmDbStorage.removeFilm(testFilm);
+        assertTrue(exportLines(mockMvc, "/films/export").isEmpty(), "экспорт пустой базы должен быть пустым");
+
+        List<Long> ids = filmDbStorage.addFilms(IntStream.range(0, 1201)
+                .mapToObj(i -> film("Фильм " + i))
+                .toList());
+        List<String> lines = exportLines(mockMvc, "/films/export");
+
+        List<Long> exportedIds = new ArrayList<>();
+        for (String line : lines) {
+            exportedIds.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        assertEquals(ids, exportedIds, "экспорт потерял или перепутал фильмы на границе страниц");
+    }
+
+    @Test
+    public void referenceDataCacheTest() {
+        jdbcStatementCounter.begin();
+        Genre genre = filmDbStorage.getGenreById(1);
+        assertEquals(6, filmDbStorage.getGenres().size(), "неверное число жанров");
+        assertEquals(5, filmDbStorage.getMpa().size(), "неверное число рейтингов");
+        assertEquals("G", filmDbStorage.getMpaById(1).getName(), "неверный рейтинг");
+        assertEquals(0, jdbcStatementCounter.end("referenceDataCacheTest"),
+                "справочники должны читаться из кэша без запросов к базе");
+        assertSame(genre, filmDbStorage.getGenreById(1), "жанр должен быть одним общим экземпляром");
+
+        jdbcTemplate.update("update genres set name = ? where id = ?", "Новое имя", 1);
+        jdbcTemplate.update("insert into genres (id, name) values (?, ?)", 7, "Новый жанр");
+        assertThrows(NotFoundException.class, () -> filmDbStorage.getGenreById(7),
+                "до обновления кэша нового жанра быть не должно");
+
+        referenceDataCache.refresh();
+        assertEquals("Новое имя", filmDbStorage.getGenreById(1).getName(), "кэш не увидел изменение жанра");
+        assertEquals("Новый жанр", filmDbStorage.getGenreById(7).getName(), "кэш не увидел новый жанр");
+    }
 }
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
@@ -12,9 +13,18 @@ import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
 
 @SpringBootTest
 class FilmsTests {
@@ -115,6 +125,90 @@ class FilmsTests {
                 "обновился");
     }
 
+    @Test
+    public void concurrentLikesTest() {
+        Film film = Film.builder().build();
+        film.setName("Requiem for a Dream");
+        film.setDescription("не надо употреблять, не надо, реально, ну зачем? (reason?)");
+        film.setReleaseDate(LocalDate.of(2000, Month.DECEMBER, 1));
+        film.setDuration(103);
+        service.addFilm(film);
+        Film other = Film.builder().build();
+        other.setName("Snatch");
+        other.setDescription("Description");
+        other.setReleaseDate(LocalDate.of(2000, Month.AUGUST, 23));
+        other.setDuration(104);
+        service.addFilm(other);
+        for (int i = 0; i < 200; i++) {
+            userStorage.addUser(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.of(1990, Month.JANUARY, 1))
+                    .friends(new HashSet<>())
+                    .build());
+        }
+
+        LongStream.rangeClosed(1, 200).parallel().forEach(userId -> service.addLike(other.getId(), userId));
+
+        assertEquals(200, service.getFilmById(other.getId()).getLikes().size(), "лайки потерялись");
+        assertEquals(other.getId(), service.getPopularFilms(1).getFirst().getId(),
+                "популярный фильм определён неверно");
+    }
+
+    @Test
+    public void popularWithoutDuplicatesTest() {
+        long first = service.addFilm(film("Первый")).getId();
+        long second = service.addFilm(film("Второй")).getId();
+        long third = service.addFilm(film("Третий")).getId();
+        long userId = userStorage.addUser(user("toggle")).getId();
+        Queue<List<Long>> duplicates = new ConcurrentLinkedQueue<>();
+
+        IntStream.range(0, 20_000).parallel().forEach(i -> {
+            if (i % 2 == 0) {
+                service.addLike(second, userId);
+                service.removeLike(second, userId);
+            } else {
+                List<Long> ids = ids(service.getPopularFilms(3));
+                if (new HashSet<>(ids).size() != ids.size())
+                    duplicates.add(ids);
+            }
+        });
+
+        assertTrue(duplicates.isEmpty(), "фильм попал в популярные дважды: " + duplicates.peek());
+        assertEquals(List.of(first, second, third),
+                ids(service.getPopularFilms(3)));
+    }
+
+    @Test
+    public void popularByGenreRatingAndYearTest() {
+        Film comedy = film("Комедия", 1);
+        Film drama = film("Драма", 2);
+        Film oldComedy = film("Старая комедия", 1).toBuilder().releaseDate(LocalDate.of(1999, 1, 1)).build();
+        service.addFilm(comedy);
+        service.addFilm(drama);
+        service.addFilm(oldComedy);
+        for (int i = 0; i < 2; i++) {
+            long userId = userStorage.addUser(user("fan" + i)).getId();
+            service.addLike(oldComedy.getId(), userId);
+        }
+
+        assertEquals(List.of(oldComedy.getId(), comedy.getId()), ids(service.getPopularFilms(10, 1L, null, null)),
+                "фильтр по жанру не применился");
+        assertEquals(List.of(comedy.getId()), ids(service.getPopularFilms(10, 1L, 1L, 2010)),
+                "фильтр по году не применился");
+        assertEquals(List.of(), ids(service.getPopularFilms(10, null, 2L, null)),
+                "фильтр по рейтингу не применился");
+
+        drama.setGenres(TestData.genres(1));
+        service.updateFilm(drama);
+        assertEquals(List.of(comedy.getId(), drama.getId()), ids(service.getPopularFilms(10, 1L, null, 2010)),
+                "индекс жанров не обновился");
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
     //тест пустого запроса
     @Test
     public void emptyRequestTest() {
@@ -0,0 +1,194 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.JdbcStatementCounter;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBehind;
+import ru.yandex.practicum.filmorate.storage.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class LikeWriteBehindTests {
+    private static final String URL = "jdbc:h2:mem:like-write-behind;DB_CLOSE_DELAY=-1";
+    @TempDir
+    static Path journal;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService service;
+    private final LikeWriteBehind likeWriteBehind;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcStatementCounter jdbcStatementCounter;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> URL);
+        registry.add("filmorate.likes.write-behind.journal-dir", journal::toString);
+    }
+
+    // Состояние процесса, упавшего до сброса журнала: фильмы и пользователи уже в базе,
+    // подтверждённые лайки есть только в сегменте журнала.
+    @BeforeAll
+    static void crashedBeforeFlush() throws IOException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "password");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        for (int i = 1; i <= 2; i++) {
+            template.update("insert into users (email, login, name, birthday) values (?, ?, ?, '1990-01-01')",
+                    "u" + i + "@mail.ru", "u" + i, "u" + i);
+        }
+        for (int i = 1; i <= 3; i++) {
+            template.update("insert into films (title, description, release_date, duration, rating_id) " +
+                    "values (?, 'описание', '2010-07-16', 148, 1)", "Фильм " + i);
+        }
+        Files.writeString(journal.resolve("likes-0000000000000000001.journal"),
+                "+ 1 1\n+ 2 1\n+ 3 1\n+ 1 2\n- 3 1\n+ 3 2\n- 3 2\n");
+    }
+
+    @Test
+    public void replayAfterCrashTest() throws IOException {
+        assertEquals(2, storedLikes(1), "лайки из журнала не попали в базу");
+        assertEquals(1, storedLikes(2), "лайки из журнала не попали в базу");
+        assertEquals(0, storedLikes(3), "лайк и снятие лайка должны схлопнуться");
+        assertEquals(2, popularityLeaderboard.getLikesCount(1), "рейтинг построен до проигрывания журнала");
+        assertEquals(1, popularityLeaderboard.getLikesCount(2), "рейтинг построен до проигрывания журнала");
+        assertEquals(0, popularityLeaderboard.getLikesCount(3), "рейтинг построен до проигрывания журнала");
+        assertEquals(List.of(2L), ids(filmDbStorage.getSimilarFilms(1, 10)),
+                "индекс похожих фильмов построен до проигрывания журнала");
+        try (Stream<Path> files = Files.list(journal)) {
+            assertTrue(files.noneMatch(file -> file.endsWith("likes-0000000000000000001.journal")),
+                    "проигранный сегмент не удалён");
+        }
+    }
+
+    @Test
+    public void likeUnlikeCoalescingTest() {
+        long filmId = filmDbStorage.addFilm(film("Схлопывание")).getId();
+        long userId = userDbStorage.addUser(user("coalesce")).getId();
+
+        assertEquals(1, service.addLike(filmId, userId).getLikesCount());
+        assertEquals(0, service.removeLike(filmId, userId).getLikesCount());
+        assertEquals(1, service.addLike(filmId, userId).getLikesCount());
+        assertEquals(0, service.removeLike(filmId, userId).getLikesCount());
+        assertEquals(0, storedLikes(filmId), "лайки записаны в базу до сброса журнала");
+
+        likeWriteBehind.flush();
+        assertEquals(0, storedLikes(filmId), "лайк и снятие лайка должны схлопнуться");
+        assertEquals(0, popularityLeaderboard.getLikesCount(filmId));
+
+        service.addLike(filmId, userId);
+        likeWriteBehind.flush();
+        assertEquals(1, storedLikes(filmId));
+        assertEquals(1, popularityLeaderboard.getLikesCount(filmId));
+    }
+
+    @Test
+    public void concurrentLikesCountOnceTest() {
+        long filmId = filmDbStorage.addFilm(film("Гонка")).getId();
+        long userId = userDbStorage.addUser(user("race")).getId();
+
+        IntStream.range(0, 200).parallel().forEach(i -> {
+            if (i % 10 == 0) {
+                likeWriteBehind.flush();
+            } else {
+                service.addLike(filmId, userId);
+            }
+        });
+        assertEquals(1, popularityLeaderboard.getLikesCount(filmId), "повторный лайк учтён в рейтинге дважды");
+
+        likeWriteBehind.flush();
+        assertEquals(1, storedLikes(filmId));
+        assertEquals(1, service.getFilmById(filmId).getLikesCount());
+    }
+
+    @Test
+    public void batchLikeAfterPendingUnlikeTest() {
+        long filmId = filmDbStorage.addFilm(film("Пачка")).getId();
+        long userId = userDbStorage.addUser(user("batch")).getId();
+        service.addLike(filmId, userId);
+        likeWriteBehind.flush();
+
+        service.removeLike(filmId, userId);
+        filmDbStorage.addLikes(List.of(FilmLike.builder().filmId(filmId).userId(userId).build()));
+        assertEquals(1, popularityLeaderboard.getLikesCount(filmId));
+
+        likeWriteBehind.flush();
+        assertEquals(1, storedLikes(filmId), "пачка лайков прошла мимо журнала");
+    }
+
+    @Test
+    public void pendingLikesFeedCoLikesTest() {
+        long first = filmDbStorage.addFilm(film("Первый")).getId();
+        long second = filmDbStorage.addFilm(film("Второй")).getId();
+        long third = filmDbStorage.addFilm(film("Третий")).getId();
+        long userId = userDbStorage.addUser(user("colike")).getId();
+
+        service.addLike(first, userId);
+        filmDbStorage.addLikes(List.of(
+                FilmLike.builder().filmId(second).userId(userId).build(),
+                FilmLike.builder().filmId(third).userId(userId).build()));
+
+        assertEquals(List.of(second, third), ids(filmDbStorage.getSimilarFilms(first, 10)),
+                "несброшенные лайки не учтены в похожих фильмах");
+    }
+
+    @Test
+    public void batchLookupInOneQueryTest() {
+        long userId = userDbStorage.addUser(user("lookup")).getId();
+        List<FilmLike> likes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            long filmId = filmDbStorage.addFilm(film("Пачка " + i)).getId();
+            likes.add(FilmLike.builder().filmId(filmId).userId(userId).build());
+        }
+        likeWriteBehind.likeAll(likes.subList(0, 5));
+        likeWriteBehind.flush();
+
+        jdbcStatementCounter.begin();
+        boolean[] changed = likeWriteBehind.likeAll(likes);
+        assertEquals(1, jdbcStatementCounter.end("batchLookupInOneQueryTest"),
+                "прежнее состояние пачки должно читаться одним запросом");
+        for (int i = 0; i < changed.length; i++) {
+            assertEquals(i >= 5, changed[i], "сохранённый лайк посчитан новым или наоборот");
+        }
+    }
+
+    private int storedLikes(long filmId) {
+        Integer count = jdbcTemplate.queryForObject("select COUNT(*) from likes where film_id = ?",
+                Integer.class, filmId);
+        return count == null ? 0 : count;
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+}
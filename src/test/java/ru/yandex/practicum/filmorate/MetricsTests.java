@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.TestData.film;
+
+@SpringBootTest(properties = "filmorate.jdbc.statement-budget=0")
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class MetricsTests {
+    private final MockMvc mockMvc;
+    private final MeterRegistry meterRegistry;
+    private final FilmDbStorage filmDbStorage;
+
+    @Test
+    public void statementBudgetTest() throws Exception {
+        mockMvc.perform(get("/films")).andExpect(status().isOk());
+        assertEquals(1, statements(), "запрос не учтён в числе JDBC-запросов");
+        assertEquals(1, overBudget(), "запрос с JDBC-запросами должен превысить нулевой бюджет");
+
+        mockMvc.perform(get("/genres/1")).andExpect(status().isOk());
+        assertEquals(2, statements(), "запрос не учтён в числе JDBC-запросов");
+        assertEquals(1, overBudget(), "жанр из кэша не должен превышать бюджет");
+    }
+
+    @Test
+    public void metricsRegisteredTest() throws Exception {
+        long filmId = filmDbStorage.addFilm(film("Метрики")).getId();
+        mockMvc.perform(get("/films/{id}", filmId)).andExpect(status().isOk());
+        double hits = filmCacheHits();
+        mockMvc.perform(get("/films/{id}", filmId)).andExpect(status().isOk());
+        assertEquals(hits + 1, filmCacheHits(), "попадание в кэш фильмов не учтено");
+        mockMvc.perform(get("/films/{id}", 9999)).andExpect(status().isNotFound());
+
+        assertEquals(2, meterRegistry.get("filmorate.storage")
+                .tags("storage", "FilmDbStorage", "method", "getFilmById", "outcome", "success")
+                .timer().count(), "время методов хранилища не записано");
+        assertEquals(1, meterRegistry.get("filmorate.storage")
+                .tags("storage", "FilmDbStorage", "method", "getFilmById", "outcome", "NotFoundException")
+                .timer().count(), "ошибка хранилища не попала в outcome");
+        assertEquals(2, meterRegistry.get("filmorate.cache.load").tag("cache", "films").timer().count(),
+                "загрузки в кэш, в том числе неудачная, не учтены");
+        assertNotNull(meterRegistry.get("filmorate.jdbc.bulkhead.queue").gauge());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("filmorate_jdbc_statements_count")))
+                .andExpect(content().string(containsString(
+                        "filmorate_storage_seconds_bucket{method=\"getFilmById\"")));
+    }
+
+    private double filmCacheHits() {
+        return meterRegistry.get("cache.gets").tags("cache", "films", "result", "hit").functionCounter().count();
+    }
+
+    private long statements() {
+        return meterRegistry.get("filmorate.jdbc.statements").summary().count();
+    }
+
+    private double overBudget() {
+        return meterRegistry.get("filmorate.jdbc.statements.over.budget").counter().count();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MigrationTests {
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate template;
+
+    @BeforeEach
+    public void init() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "sa", "password");
+        template = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    public void existingSchemaTest() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__initial_schema.sql"))
+                .execute(dataSource);
+        template.update("insert into ratings (id, name) values (1, 'G')");
+        template.update("insert into genres (id, name) values (1, 'Комедия')");
+        template.update("insert into statuses (id, name) values (1, 'confirmed'), (2, 'unconfirmed')");
+        template.update("insert into users (email, login, name) values ('a@mail.ru', 'a', 'a'), ('b@mail.ru', 'b', 'b')");
+        template.update("insert into films (title, rating_id) values ('Фильм', 1)");
+        template.update("insert into likes (film_id, user_id) values (1, 1), (1, 1), (1, 2), (1, 1), (1, null)");
+        template.update("insert into friends (user_id, friend_id, status_id) values " +
+                "(1, 2, 2), (1, 2, 1), (1, 2, 2), (2, 1, 2), (2, 1, 2)");
+        template.update("insert into film_genres (film_id, genre_id) values (1, 1), (1, 1)");
+
+        MigrateResult result = migrate();
+
+        assertEquals(2, result.migrationsExecuted, "существующая схема должна приниматься как версия 1");
+        assertEquals(List.of(Map.of("FILM_ID", 1, "USER_ID", 1), Map.of("FILM_ID", 1, "USER_ID", 2)),
+                template.queryForList("select film_id, user_id from likes order by user_id"),
+                "дубли лайков не удалены");
+        assertEquals(List.of(Map.of("USER_ID", 1, "FRIEND_ID", 2, "STATUS_ID", 1),
+                        Map.of("USER_ID", 2, "FRIEND_ID", 1, "STATUS_ID", 2)),
+                template.queryForList("select user_id, friend_id, status_id from friends order by user_id"),
+                "из дублей дружбы должна остаться одна запись с подтверждённым статусом");
+        assertEquals(1, template.queryForObject("select COUNT(*) from film_genres", Integer.class),
+                "дубли жанров не удалены");
+        assertEquals(6, template.queryForObject("select COUNT(*) from genres", Integer.class),
+                "справочники не заполнены");
+        assertThrows(DataIntegrityViolationException.class,
+                () -> template.update("insert into likes (film_id, user_id) values (1, 1)"),
+                "после миграции дубль лайка должен отклоняться ключом");
+    }
+
+    private MigrateResult migrate() {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+    }
+}
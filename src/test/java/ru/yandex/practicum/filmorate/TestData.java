@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class TestData {
+    private TestData() {
+    }
+
+    static Film film(String name, long... genreIds) {
+        return Film.builder()
+                .name(name)
+                .description("описание")
+                .releaseDate(LocalDate.of(2010, 7, 16))
+                .duration(148)
+                .mpa(Rating.builder()
+                        .id(1)
+                        .build())
+                .genres(genres(genreIds))
+                .build();
+    }
+
+    static List<Genre> genres(long... ids) {
+        return new ArrayList<>(Arrays.stream(ids)
+                .mapToObj(id -> Genre.builder().id(id).build())
+                .toList());
+    }
+
+    static User user(String login) {
+        return User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
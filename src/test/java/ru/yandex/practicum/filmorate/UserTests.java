@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
@@ -10,6 +11,8 @@ import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -145,4 +148,48 @@ public class UserTests {
         assertEquals(0, service.getUsers().size(),
                 "пользователь с пробелом в логине добавился");
     }
+
+    @Test
+    public void concurrentFriendsTest() {
+        int usersCount = 100;
+        for (int i = 0; i < usersCount; i++) {
+            User user = User.builder().build();
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(2000, Month.JANUARY, 1));
+            service.addUser(user);
+        }
+
+        IntStream.range(0, usersCount * usersCount).parallel().forEach(pair -> {
+            long userId = pair / usersCount + 1;
+            long friendId = pair % usersCount + 1;
+            if (userId != friendId)
+                service.addFriend(userId, friendId);
+        });
+
+        for (long id = 1; id <= usersCount; id++) {
+            assertEquals(usersCount - 1, service.getUserFriends(id).size(),
+                    "дружба пользователя " + id + " записалась не полностью");
+        }
+    }
+
+    @Test
+    public void friendshipPathDepthLimitTest() {
+        for (int i = 0; i < 8; i++) {
+            User user = User.builder().build();
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(2000, Month.JANUARY, 1));
+            service.addUser(user);
+        }
+        for (long id = 1; id < 8; id++) {
+            service.addFriend(id, id + 1);
+        }
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), service.getFriendshipPath(1, 7).stream()
+                .map(User::getId)
+                .toList(), "путь из шести рукопожатий не найден");
+        assertThrows(NotFoundException.class, () -> service.getFriendshipPath(1, 8),
+                "путь длиннее лимита глубины не должен искаться");
+    }
 }
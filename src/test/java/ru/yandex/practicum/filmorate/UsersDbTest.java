@@ -1,13 +1,19 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
@@ -15,17 +21,25 @@ import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.filmorate.ExportRequests.exportLines;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
+@AutoConfigureMockMvc
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class UsersDbTest {
     private final UserDbStorage userStorage;
     private final UserService service;
     private final JdbcTemplate template;
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
     User user1;
     User user2;
     User user3;
@@ -98,6 +112,17 @@ public class UsersDbTest {
                 "пользователь не добавился в друзья");
     }
 
+    @Test
+    public void repeatedFriendTest() {
+        service.addFriend(user1.getId(), user2.getId());
+        service.addFriend(user1.getId(), user2.getId());
+
+        assertEquals(1, template.queryForObject("select COUNT(*) from friends where user_id = ? and friend_id = ?",
+                Integer.class, user1.getId(), user2.getId()), "повторное добавление создало дубль");
+        assertEquals(List.of(user2.getId()), userStorage.getUserById(user1.getId()).getUserFriends(),
+                "друг задвоился в списке");
+    }
+
     @Test
     public void removeFriendsTest() {
         service.addFriend(user1.getId(), user2.getId());
@@ -120,4 +145,112 @@ public class UsersDbTest {
         }
 
     }
+
+    @Test
+    public void getUsersPageTest() {
+        userStorage.addUser(user3);
+        List<User> firstPage = userStorage.getUsers(0, 2);
+        assertEquals(2, firstPage.size(), "первая страница должна быть полной");
+        List<User> secondPage = userStorage.getUsers(firstPage.getLast().getId(), 2);
+        assertEquals(1, secondPage.size(), "на второй странице должен остаться один пользователь");
+        assertEquals(user3.getId(), secondPage.getFirst().getId(), "курсор пропустил пользователя");
+    }
+
+    @Test
+    public void addFriendsBatchTest() {
+        BatchResult result = service.addFriends(List.of(
+                Friendship.builder().userId(user1.getId()).friendId(user2.getId()).build(),
+                Friendship.builder().userId(user1.getId()).friendId(999).build()));
+
+        assertEquals(1, result.getAccepted(), "валидная дружба не добавилась");
+        assertEquals(1, result.getFailures().size(), "ошибка не попала в отчёт");
+        assertEquals(1, result.getFailures().getFirst().getIndex(), "неверный индекс ошибки");
+        assertEquals(List.of(user2.getId()), userStorage.getUserById(user1.getId()).getUserFriends(),
+                "друг не добавился пачкой");
+    }
+
+    @Test
+    public void getCommonFriendsTest() {
+        userStorage.addUser(user3);
+        service.addFriend(user1.getId(), user3.getId());
+        service.addFriend(user2.getId(), user3.getId());
+        service.addFriend(user1.getId(), user2.getId());
+
+        List<User> commonFriends = service.getCommonFriends(user1.getId(), user2.getId());
+        assertEquals(1, commonFriends.size(), "неверное число общих друзей");
+        assertEquals(user3.getId(), commonFriends.getFirst().getId(), "общий друг не найден");
+
+        service.removeFriend(user2.getId(), user3.getId());
+        assertTrue(service.getCommonFriends(user1.getId(), user2.getId()).isEmpty(),
+                "общий друг остался после удаления дружбы");
+    }
+
+    @Test
+    public void friendSuggestionsTest() throws Exception {
+        List<Long> ids = service.addUsers(IntStream.range(0, 6)
+                .mapToObj(i -> user1.toBuilder().id(0).build())
+                .toList());
+        long a = ids.get(0);
+        long b = ids.get(1);
+        long c = ids.get(2);
+        long x = ids.get(3);
+        long y = ids.get(4);
+        long w = ids.get(5);
+        long self = user1.getId();
+        long friend = user2.getId();
+        service.addFriends(List.of(
+                friendship(self, a), friendship(self, b), friendship(self, c), friendship(self, friend),
+                friendship(a, x), friendship(a, y), friendship(a, self),
+                friendship(b, x), friendship(b, y), friendship(b, w), friendship(b, friend),
+                friendship(c, x), friendship(c, w)));
+
+        assertEquals(List.of(x, y, w), ids(service.getFriendSuggestions(self, 10)),
+                "кандидаты должны идти по числу общих друзей, при равенстве по id");
+        assertEquals(List.of(x, y), ids(service.getFriendSuggestions(self, 2)), "limit не ограничил выдачу");
+        mockMvc.perform(get("/users/{id}/friends/suggestions", self).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(x));
+        mockMvc.perform(get("/users/{id}/friends/suggestions", self).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/{id}/friends/suggestions", self).param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static Friendship friendship(long userId, long friendId) {
+        return Friendship.builder()
+                .userId(userId)
+                .friendId(friendId)
+                .build();
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream()
+                .map(User::getId)
+                .toList();
+    }
+
+    @Test
+    public void exportUsersTest() throws Exception {
+        List<Long> ids = new ArrayList<>(List.of(user1.getId(), user2.getId()));
+        ids.addAll(service.addUsers(IntStream.range(0, 600)
+                .mapToObj(i -> User.builder()
+                        .email("user" + i + "@mail.ru")
+                        .login("user" + i)
+                        .name("User " + i)
+                        .birthday(LocalDate.of(1990, 1, 1))
+                        .build())
+                .toList()));
+        service.addFriend(user1.getId(), ids.getLast());
+
+        List<String> lines = exportLines(mockMvc, "/users/export");
+
+        List<Long> exportedIds = new ArrayList<>();
+        for (String line : lines) {
+            exportedIds.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        assertEquals(ids, exportedIds, "экспорт потерял или перепутал пользователей на границе страниц");
+        JsonNode first = objectMapper.readTree(lines.getFirst());
+        assertEquals(ids.getLast(), first.get("userFriends").get(0).asLong(), "в экспорт не попали друзья");
+    }
 }